@@ -0,0 +1,275 @@
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * This class decodes the audio of the beatmaps to PCM wav files in the
+ * cache directory, so the game never has to play an mp3 or an ogg file
+ * (Greenfoot can't play mp3 files properly). Each audio file is decoded
+ * once, named by its ContentHash, so every later play of the song (Or of
+ * any set with the same audio) starts from the decoded file right away.
+ *
+ * The audio is decoded with Java Sound. The mp3 and ogg decoders (mp3spi
+ * and vorbisspi) are in the +libs directory, which Greenfoot puts on the
+ * classpath. If there's no decoder for a file, the wav file next to it
+ * with the same name is played instead.
+ *
+ * Audio files that are already PCM wav files on the disk are played as
+ * they are.
+ *
+ * @author agent
+ * @since 2026-10-18 04:53
+ */
+@SuppressWarnings("WeakerAccess")
+public class AudioCache
+{
+    /** Directory of the decoded audio */
+    private static final File DIRECTORY = new File(Constants.CACHE_DIRECTORY, "audio");
+
+    /** Decoded sample size in bits */
+    private static final int SAMPLE_BITS = 16;
+
+    /** How often a thread that waits for another thread's decoding checks if it's cancelled, in ms */
+    private static final long WAIT_MS = 100;
+
+    /** Running decodings by ContentHash, so every thread that needs the same audio waits for one decoding */
+    private static final Map<Long, CompletableFuture<File>> DECODINGS = new ConcurrentHashMap<>();
+
+    /**
+     * Get the file to play for an audio file, decoding it if it's not
+     * decoded yet.
+     *
+     * @param audio Audio file (On the disk or in an archive)
+     * @return File to play
+     * @throws IOException File read or write error
+     */
+    public static File getPlayable(File audio) throws IOException
+    {
+        return prepare(audio, ContentHash.hash(audio), null, null);
+    }
+
+    /**
+     * Get the file to play for an audio file, decoding it if it's not
+     * decoded yet. If another thread is decoding it already, this waits for
+     * its result instead, and only decodes it if that thread is cancelled.
+     *
+     * @param audio Audio file (On the disk or in an archive)
+     * @param hash ContentHash of the audio file
+     * @param progress Called with the number of bytes of the audio file read so far (Can be null)
+     * @param cancelled Stops the decoding when it returns true (Can be null)
+     * @return File to play
+     * @throws IOException File read or write error, or cancelled (InterruptedIOException)
+     */
+    public static File prepare(File audio, long hash, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException
+    {
+        File cached = new File(DIRECTORY, ContentHash.toHex(hash) + ".wav");
+        if (cached.isFile()) return cached;
+
+        while (true)
+        {
+            CompletableFuture<File> decoding = new CompletableFuture<>();
+            CompletableFuture<File> running = DECODINGS.putIfAbsent(hash, decoding);
+
+            if (running == null)
+            {
+                // Decode it here, the threads that come later wait for this.
+                try
+                {
+                    File decoded = decode(audio, cached, progress, cancelled);
+                    decoding.complete(decoded);
+                    return decoded;
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    decoding.completeExceptionally(e);
+                    throw e;
+                }
+                finally
+                {
+                    DECODINGS.remove(hash, decoding);
+                }
+            }
+
+            try
+            {
+                return await(running, cancelled);
+            }
+            catch (InterruptedIOException e)
+            {
+                // This thread is cancelled: stop. The other thread is cancelled: decode it again.
+                if (cancelled != null && cancelled.getAsBoolean()) throw e;
+            }
+        }
+    }
+
+    /**
+     * Wait for another thread's decoding.
+     *
+     * @param decoding Decoding of the other thread
+     * @param cancelled Stops waiting when it returns true (Can be null)
+     * @return File to play
+     * @throws IOException The decoding failed, or either thread is cancelled (InterruptedIOException)
+     */
+    private static File await(CompletableFuture<File> decoding, BooleanSupplier cancelled) throws IOException
+    {
+        try
+        {
+            while (true)
+            {
+                if (cancelled != null && cancelled.getAsBoolean()) throw new InterruptedIOException("Error: Cancelled");
+                try
+                {
+                    return decoding.get(WAIT_MS, TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException e)
+                {
+                    // Still decoding, check if it's cancelled again.
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Error: Interrupted");
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Decode an audio file to the cache. Only one thread decodes the same
+     * audio at a time.
+     *
+     * @param audio Audio file (On the disk or in an archive)
+     * @param cached Decoded file in the cache
+     * @param progress Called with the number of bytes of the audio file read so far (Can be null)
+     * @param cancelled Stops the decoding when it returns true (Can be null)
+     * @return File to play
+     * @throws IOException File read or write error, or cancelled (InterruptedIOException)
+     */
+    private static File decode(File audio, File cached, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException
+    {
+        // Decoded by a thread that was done before this one started.
+        if (cached.isFile()) return cached;
+
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(new BufferedInputStream(
+                new ProgressInputStream(BeatmapFiles.open(audio), progress, cancelled))))
+        {
+            AudioFormat format = in.getFormat();
+            boolean pcm = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) ||
+                    format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED);
+
+            // Wav files on the disk don't need to be decoded.
+            if (pcm && !BeatmapFiles.isInArchive(audio) && audio.getName().toLowerCase().endsWith(".wav")) return audio;
+
+            AudioInputStream decoded = pcm ? in : AudioSystem.getAudioInputStream(new AudioFormat(
+                    AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), SAMPLE_BITS, format.getChannels(),
+                    format.getChannels() * SAMPLE_BITS / 8, format.getSampleRate(), false), in);
+
+            // Write to a temporary file first, so that a half decoded file will never be played.
+            if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) throw new IOException("Error: Failed to create " + DIRECTORY);
+            File temp = File.createTempFile("audio", ".tmp", DIRECTORY);
+            try
+            {
+                AudioSystem.write(decoded, AudioFileFormat.Type.WAVE, temp);
+                Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp.toPath());
+            }
+            return cached;
+        }
+        catch (UnsupportedAudioFileException | IllegalArgumentException e)
+        {
+            // No decoder for this format: Play the wav version next to it if there is one.
+            File wav = new File(audio.getParentFile(), replaceExtension(audio.getName(), ".wav"));
+            return BeatmapFiles.length(wav) > 0 ? wav : audio;
+        }
+    }
+
+    /**
+     * Replace the extension of a file name.
+     *
+     * @param name File name
+     * @param extension New extension with the dot
+     * @return New file name
+     */
+    private static String replaceExtension(String name, String extension)
+    {
+        int dot = name.lastIndexOf('.');
+        return (dot < 0 ? name : name.substring(0, dot)) + extension;
+    }
+
+    /**
+     * An input stream that reports how much is read, and stops when it's
+     * cancelled.
+     */
+    private static class ProgressInputStream extends FilterInputStream
+    {
+        private final LongConsumer progress;
+        private final BooleanSupplier cancelled;
+        private long read = 0;
+
+        private ProgressInputStream(InputStream in, LongConsumer progress, BooleanSupplier cancelled)
+        {
+            super(in);
+            this.progress = progress;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (cancelled != null && cancelled.getAsBoolean()) throw new InterruptedIOException("Error: Cancelled");
+
+            int count = super.read(buffer, offset, length);
+            if (count > 0)
+            {
+                read += count;
+                if (progress != null) progress.accept(read);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException
+        {
+            long skipped = super.skip(count);
+            read += skipped;
+            if (progress != null) progress.accept(read);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Converts beat positions to times for the chart formats that place notes
+ * by beats (StepMania and BMS), using the BPM changes and the stops.
+ *
+ * Usage: add all the BPM changes and stops, then call timeAt().
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+@SuppressWarnings("WeakerAccess")
+public class BeatTiming
+{
+    /** Time of beat 0 in ms */
+    private final double offset;
+
+    /** BPM changes: beat and BPM, sorted by beat after prepare() */
+    private double[] bpmBeats = new double[8], bpms = new double[8];
+    private int bpmCount = 0;
+
+    /** Stops: beat and length in ms, sorted by beat after prepare() */
+    private double[] stopBeats = new double[8], stopLengths = new double[8];
+    private int stopCount = 0;
+
+    /** Time of each BPM change in ms (Without stops), calculated by prepare() */
+    private double[] bpmTimes;
+
+    /** Total stop length up to and including each stop, calculated by prepare() */
+    private double[] stopSums;
+
+    /**
+     * Construct a beat timing.
+     *
+     * @param offset Time of beat 0 in ms
+     */
+    public BeatTiming(double offset)
+    {
+        this.offset = offset;
+    }
+
+    /**
+     * Add a BPM change. Non-positive BPMs (warps) are not supported and
+     * ignored.
+     *
+     * @param beat Beat position
+     * @param bpm New BPM
+     */
+    public void addBpm(double beat, double bpm)
+    {
+        if (bpm <= 0) return;
+        if (bpmCount == bpmBeats.length)
+        {
+            bpmBeats = Arrays.copyOf(bpmBeats, bpmCount * 2);
+            bpms = Arrays.copyOf(bpms, bpmCount * 2);
+        }
+        bpmBeats[bpmCount] = beat;
+        bpms[bpmCount] = bpm;
+        bpmCount++;
+        bpmTimes = null;
+    }
+
+    /**
+     * Add a stop. Notes after the stop are delayed by the stop length.
+     *
+     * @param beat Beat position
+     * @param length Length in ms
+     */
+    public void addStop(double beat, double length)
+    {
+        if (length <= 0) return;
+        if (stopCount == stopBeats.length)
+        {
+            stopBeats = Arrays.copyOf(stopBeats, stopCount * 2);
+            stopLengths = Arrays.copyOf(stopLengths, stopCount * 2);
+        }
+        stopBeats[stopCount] = beat;
+        stopLengths[stopCount] = length;
+        stopCount++;
+        bpmTimes = null;
+    }
+
+    /**
+     * Sort the changes and sum up the times.
+     */
+    private void prepare()
+    {
+        // There has to be a BPM at beat 0.
+        if (bpmCount == 0) addBpm(0, 120);
+        sortPairs(bpmBeats, bpms, bpmCount);
+        sortPairs(stopBeats, stopLengths, stopCount);
+
+        // Time of each BPM change (The first BPM also applies before it)
+        bpmTimes = new double[bpmCount];
+        bpmTimes[0] = offset + bpmBeats[0] * 60000 / bpms[0];
+        for (int i = 1; i < bpmCount; i++)
+        {
+            bpmTimes[i] = bpmTimes[i - 1] + (bpmBeats[i] - bpmBeats[i - 1]) * 60000 / bpms[i - 1];
+        }
+
+        // Total stop lengths
+        stopSums = new double[stopCount];
+        for (int i = 0; i < stopCount; i++)
+        {
+            stopSums[i] = (i == 0 ? 0 : stopSums[i - 1]) + stopLengths[i];
+        }
+    }
+
+    /**
+     * Calculate the time of a beat.
+     *
+     * @param beat Beat position
+     * @return Time in ms
+     */
+    public double timeAt(double beat)
+    {
+        if (bpmTimes == null) prepare();
+
+        // BPM segment
+        int i = lastIndexBefore(bpmBeats, bpmCount, beat, true);
+        if (i < 0) i = 0;
+        double time = bpmTimes[i] + (beat - bpmBeats[i]) * 60000 / bpms[i];
+
+        // Stops before the beat. (A note on the stop is hit before the stop)
+        int s = lastIndexBefore(stopBeats, stopCount, beat, false);
+        if (s >= 0) time += stopSums[s];
+
+        return time;
+    }
+
+    /**
+     * Get the BPM at a beat.
+     *
+     * @param beat Beat position
+     * @return BPM
+     */
+    public double bpmAt(double beat)
+    {
+        if (bpmTimes == null) prepare();
+        return bpms[Math.max(0, lastIndexBefore(bpmBeats, bpmCount, beat, true))];
+    }
+
+    /**
+     * Get the BPM changes as uninherited timing points.
+     *
+     * @param times Output: time of each point (Length must be getBpmCount())
+     * @param beatLengths Output: beat length of each point
+     */
+    public void toTimingPoints(int[] times, double[] beatLengths)
+    {
+        if (bpmTimes == null) prepare();
+
+        for (int i = 0; i < bpmCount; i++)
+        {
+            times[i] = (int) Math.round(timeAt(bpmBeats[i]));
+            beatLengths[i] = 60000 / bpms[i];
+        }
+    }
+
+    /**
+     * Find the last index with a beat before the target.
+     *
+     * @param beats Sorted beats
+     * @param count Count
+     * @param target Target beat
+     * @param inclusive Include the beats equal to the target or not
+     * @return Index (-1 if none)
+     */
+    private static int lastIndexBefore(double[] beats, int count, double target, boolean inclusive)
+    {
+        int low = 0, high = count - 1, result = -1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (beats[mid] < target || (inclusive && beats[mid] == target))
+            {
+                result = mid;
+                low = mid + 1;
+            }
+            else high = mid - 1;
+        }
+        return result;
+    }
+
+    /**
+     * Sort two arrays by the first one (Insertion sort, since they are
+     * almost always sorted already).
+     *
+     * @param keys Keys
+     * @param values Values
+     * @param count Count
+     */
+    private static void sortPairs(double[] keys, double[] values, int count)
+    {
+        for (int i = 1; i < count; i++)
+        {
+            double key = keys[i], value = values[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key)
+            {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public int getBpmCount()
+    {
+        if (bpmTimes == null) prepare();
+        return bpmCount;
+    }
+}
@@ -1,8 +1,6 @@
-import greenfoot.sound.Sound;
-
 import java.io.File;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Map;
 
 /**
  * A beatmap defines the arrangement of the notes in a song.
@@ -15,25 +13,32 @@ import java.util.Map;
 public class Beatmap
 {
     /**
-     * This is a list of array lists representing the notes in each column.
-     * Eg. First column: noteColumns[0];
-     * Eg. First note in first column: noteColumns[0].get(0);
+     * The notes in each column.
+     * Eg. First column: future[0], present[0], past[0];
      *
-     * Past: Notes that the player already hit.
+     * Past: Notes that the player already hit. (Only counted)
      * Present: Notes that are on the screen.
-     * Future: Notes that are not yet spawned.
+     * Future: Notes that are not yet spawned. These are the sorted note
+     *         times of the chart, which might be a view of a mapped file,
+     *         and futureIndex is the index of the next one to spawn. A
+     *         NoteInformation is only created when a note is spawned, so
+     *         long charts do not need to be on the heap.
      *
      * Order: The earliest notes are at the front of the array.
      */
-    private transient ArrayList<NoteInformation>[] future;
+    private transient IntBuffer[] future;
+    private transient int[] futureIndex;
     private transient ArrayList<Note>[] present;
-    private transient ArrayList<NoteInformation>[] past;
-    
+    private transient int[] past;
+
+    /** Scroll timeline (Not serialized) */
+    private transient ScrollTimeline timeline = new ScrollTimeline();
+
     /** Music (Not serialized) */
-    private transient Sound music;
+    private transient Music music;
 
-    /** Properties */
-    private Map<String, String> properties;
+    /** Header metadata */
+    private BeatmapMetadata metadata;
 
     /** Beatmap ID */
     private int id;
@@ -46,16 +51,16 @@ public class Beatmap
      */
     public Beatmap()
     {
-        // Initialize array lists.
-        future = new ArrayList[Constants.NUM_COLS];
+        // Initialize arrays.
+        future = new IntBuffer[Constants.NUM_COLS];
+        futureIndex = new int[Constants.NUM_COLS];
         present = new ArrayList[Constants.NUM_COLS];
-        past = new ArrayList[Constants.NUM_COLS];
+        past = new int[Constants.NUM_COLS];
 
         for (int i = 0; i < Constants.NUM_COLS; i++)
         {
-            future[i] = new ArrayList<>();
+            future[i] = IntBuffer.allocate(0);
             present[i] = new ArrayList<>();
-            past[i] = new ArrayList<>();
         }
     }
 
@@ -69,7 +74,7 @@ public class Beatmap
         int total = 0;
         for (int i = 0; i < Constants.NUM_COLS; i++)
         {
-            total += past[i].size() + present[i].size() + future[i].size();
+            total += future[i].limit();
         }
         return total;
     }
@@ -81,39 +86,101 @@ public class Beatmap
      */
     public boolean isDone()
     {
-        // A done map should not have any present notes.
-        for (ArrayList<Note> notes : present)
+        for (int i = 0; i < Constants.NUM_COLS; i++)
         {
-            if (!notes.isEmpty()) return false;
-        }
+            // A done map should not have any present notes.
+            if (!present[i].isEmpty()) return false;
 
-        // A done map should not have any future notes.
-        for (ArrayList<NoteInformation> notes : future)
-        {
-            if (!notes.isEmpty()) return false;
+            // A done map should not have any future notes.
+            if (hasFuture(i)) return false;
         }
 
         // Done.
         return true;
     }
 
-    // ###################
-    // Getters and Setters
-    // ###################
+    /**
+     * Get the hit time of the last note.
+     *
+     * @return Hit time in ms (0 if there are no notes)
+     */
+    public int getLastNoteTime()
+    {
+        int last = 0;
+        for (int i = 0; i < Constants.NUM_COLS; i++)
+        {
+            if (future[i].limit() > 0) last = Math.max(last, future[i].get(future[i].limit() - 1));
+        }
+        return last;
+    }
 
-    public NoteInformation getFirstInLine(int col)
+    /**
+     * Check if a column has notes that are not yet spawned.
+     *
+     * @param col Column number
+     * @return Has future notes or not
+     */
+    public boolean hasFuture(int col)
     {
-        return getPast(col).get(0);
+        return futureIndex[col] < future[col].limit();
     }
 
-    public ArrayList<NoteInformation> getPast(int col)
+    /**
+     * Get the hit time of the next note to spawn in a column, without
+     * spawning it. Check hasFuture() first.
+     *
+     * @param col Column number
+     * @return Hit time in ms
+     */
+    public int peekFuture(int col)
     {
-        return past[col];
+        return future[col].get(futureIndex[col]);
+    }
+
+    /**
+     * Take the next note to spawn out of the future of a column.
+     *
+     * @param col Column number
+     * @return Information of the note
+     */
+    public NoteInformation pollFuture(int col)
+    {
+        return new NoteInformation(future[col].get(futureIndex[col]++), col);
+    }
+
+    /**
+     * Rewind the beatmap to the start, so it can be played again without
+     * reading it again. The present notes must be removed from the world
+     * first.
+     */
+    public void rewind()
+    {
+        for (int i = 0; i < Constants.NUM_COLS; i++)
+        {
+            futureIndex[i] = 0;
+            present[i].clear();
+            past[i] = 0;
+        }
+    }
+
+    /**
+     * Move a note from present to past.
+     *
+     * @param note Note actor
+     */
+    public void moveToPast(Note note)
+    {
+        present[note.getColumn()].remove(note);
+        past[note.getColumn()]++;
     }
 
-    public ArrayList<NoteInformation>[] getPast()
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public int getPastCount(int col)
     {
-        return past;
+        return past[col];
     }
 
     public ArrayList<Note> getPresent(int col)
@@ -126,34 +193,45 @@ public class Beatmap
         return present;
     }
 
-    public ArrayList<NoteInformation> getFuture(int col)
+    public IntBuffer getFuture(int col)
     {
         return future[col];
     }
 
-    public ArrayList<NoteInformation>[] getFuture()
+    public void setFuture(int col, IntBuffer notes)
+    {
+        future[col] = notes;
+        futureIndex[col] = 0;
+    }
+
+    public ScrollTimeline getTimeline()
+    {
+        return timeline;
+    }
+
+    public void setTimeline(ScrollTimeline timeline)
     {
-        return future;
+        this.timeline = timeline;
     }
 
-    public Sound getMusic()
+    public Music getMusic()
     {
         return music;
     }
 
-    public void setMusic(Sound music)
+    public void setMusic(Music music)
     {
         this.music = music;
     }
 
-    public Map<String, String> getProperties()
+    public BeatmapMetadata getMetadata()
     {
-        return properties;
+        return metadata;
     }
 
-    public void setProperties(Map<String, String> properties)
+    public void setMetadata(BeatmapMetadata metadata)
     {
-        this.properties = properties;
+        this.metadata = metadata;
     }
 
     public int getId()
@@ -33,6 +33,15 @@ public class BeatmapController extends Actor
     /** Key hit animation displayers, in a row */
     private final KeyHitAnimation[] keyHitAnimations;
 
+    /** The thread that starts the timer and the music (Null if it's not started) */
+    private Thread starter;
+
+    /** Hit time of the last note */
+    private final int lastNoteTime;
+
+    /** Load of the next chart in the playlist (Null if it's not started or there's none) */
+    private BeatmapLoader.Load next;
+
     /**
      * Create a beatmap controller.
      *
@@ -45,6 +54,7 @@ public class BeatmapController extends Actor
         this.beatmap = beatmap;
         this.judgementCalculator = new JudgementCalculator(beatmap);
         this.scoreCounter = scoreCounter;
+        this.lastNoteTime = beatmap.getLastNoteTime();
 
         // Create key hit score object
         keyHitDisplayer = new KeyHitScore();
@@ -78,7 +88,7 @@ public class BeatmapController extends Actor
     public void start()
     {
         // Use async execution to deal with offsets.
-        new Thread(() ->
+        starter = new Thread(() ->
         {
             try
             {
@@ -103,7 +113,44 @@ public class BeatmapController extends Actor
             }
             catch (InterruptedException ignored) {}
 
-        }).start();
+        });
+        starter.start();
+    }
+
+    /**
+     * Restart the beatmap from the start. Nothing is read again: the
+     * notes are rewound, the scores and the timer are reset, and the same
+     * music is played from the start again.
+     */
+    public void restart()
+    {
+        // Wait for the starter to stop, so it can't start the timer or the music after the reset.
+        if (starter != null)
+        {
+            starter.interrupt();
+            try
+            {
+                starter.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Stopping the music rewinds it, so it plays from the start.
+        beatmap.getMusic().stop();
+        timer.reset();
+
+        // Remove the notes on the screen, and rewind the future notes.
+        for (ArrayList<Note> col : beatmap.getPresent())
+        {
+            getWorld().removeObjects(col);
+        }
+        beatmap.rewind();
+
+        scoreCounter.reset(getWorld());
+        start();
     }
 
     /**
@@ -116,24 +163,26 @@ public class BeatmapController extends Actor
         // Get time
         int gameTime = timer.getTotalDuration();
 
-        // Spawn notes.
-        for (ArrayList<NoteInformation> col : beatmap.getFuture())
+        // Spawn notes. The future notes are sorted, so only the next ones need to be checked.
+        ScrollTimeline timeline = beatmap.getTimeline();
+        double position = timeline.positionAt(gameTime - Constants.GAME_SPAWNING_OFFSET);
+        for (int col = 0; col < Constants.NUM_COLS; col++)
         {
-            // Used this to bypass java.util.ConcurrentModificationException
-            for (int i = 0; i < col.size(); i++)
+            // Within the speed range. (Scroll positions are used, so SV changes spawn at the right time)
+            while (beatmap.hasFuture(col) &&
+                    timeline.positionAt(beatmap.peekFuture(col)) - position < Constants.GAME_SPEED_MS)
             {
-                NoteInformation noteInfo = col.get(i);
-
-                // Within the speed range.
-                if (noteInfo.getTime() + Constants.GAME_SPAWNING_OFFSET - gameTime < Constants.GAME_SPEED_MS)
-                {
-                    // Spawn the note to the top.
-                    spawnNote(noteInfo);
-                    i--;
-                }
+                // Spawn the note to the top.
+                spawnNote(beatmap.pollFuture(col));
             }
         }
 
+        // Playlist: Load the next chart in the last seconds of this one.
+        if (next == null && !Playlist.isEmpty() && gameTime >= lastNoteTime - Constants.PLAYLIST_PRELOAD_MS)
+        {
+            next = BeatmapLoader.load(Playlist.poll());
+        }
+
         // Register non-hit notes as missed.
         for (ArrayList<Note> col : beatmap.getPresent())
         {
@@ -158,6 +207,13 @@ public class BeatmapController extends Actor
             // Stop timer
             timer.stop();
 
+            // Playlist: Play the next chart instead of showing the report.
+            if (next != null)
+            {
+                ((BeatmapWorld) getWorld()).playNext(next);
+                return;
+            }
+
             /* Output JSON object for debug.
             try
             {
@@ -192,13 +248,12 @@ public class BeatmapController extends Actor
     private void spawnNote(NoteInformation noteInfo)
     {
         // Spawn the note.
-        Note note = new Note(noteInfo);
+        Note note = new Note(noteInfo, beatmap.getTimeline(), timer);
         getWorld().addObject(note, 0, 0);
         note.init();
 
-        // Put in present and remove from future.
+        // Put in present. (It's already taken out of future)
         beatmap.getPresent(noteInfo.getColumn()).add(note);
-        beatmap.getFuture(noteInfo.getColumn()).remove(noteInfo);
     }
 
     /**
@@ -216,8 +271,7 @@ public class BeatmapController extends Actor
         note.getWorld().removeObject(note);
 
         // Move from present to past
-        beatmap.getPresent(note.getColumn()).remove(note);
-        beatmap.getPast(note.getColumn()).add(new NoteInformation(note));
+        beatmap.moveToPast(note);
 
         // Show hit image
         keyHitDisplayer.hit(hitScore);
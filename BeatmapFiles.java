@@ -0,0 +1,369 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A beatmap set is either a directory or a .osz archive in the beatmaps
+ * directory. This class reads the files of both kinds of sets, so the
+ * rest of the game doesn't need to know which one it is.
+ *
+ * A file in an archive is represented as new File(archive, entryName),
+ * Eg. "beatmaps/398366 deadmau5 - Orange File.osz/background.jpg". The
+ * archive is opened as a zip FileSystem, which only reads the central
+ * directory, and the entries are only read when they are opened.
+ *
+ * An open FileSystem is shared by everyone reading the same archive, and
+ * kept open after the last reader is done (Up to MAX_IDLE_ARCHIVES of
+ * them), so a library scan doesn't read the central directory once for
+ * every file. It is opened again when the archive's modified time or
+ * size changes.
+ *
+ * @author agent
+ * @since 2026-10-18 04:27
+ */
+@SuppressWarnings("WeakerAccess")
+public class BeatmapFiles
+{
+    /** Most archives that are kept open when nobody is reading them */
+    private static final int MAX_IDLE_ARCHIVES = 8;
+
+    /** Open archives by archive file, least recently used first (Guarded by itself) */
+    private static final Map<File, Archive> ARCHIVES = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Is a file a beatmap archive?
+     *
+     * @param file File
+     * @return Is archive or not
+     */
+    public static boolean isArchive(File file)
+    {
+        return file != null && file.getName().toLowerCase().endsWith(".osz") && file.isFile();
+    }
+
+    /**
+     * Is a file in a beatmap archive?
+     *
+     * @param file File
+     * @return In archive or not
+     */
+    public static boolean isInArchive(File file)
+    {
+        return isArchive(file.getParentFile());
+    }
+
+    /**
+     * List the files in a beatmap set. Sub-directories are not included.
+     * For an archive, only the central directory is read.
+     *
+     * @param beatmapSet Beatmap set directory or archive
+     * @return Files (Null if it's not a beatmap set)
+     */
+    public static File[] listFiles(File beatmapSet)
+    {
+        if (!isArchive(beatmapSet)) return beatmapSet.listFiles(File::isFile);
+
+        List<File> files = new ArrayList<>();
+        Archive archive = null;
+        try
+        {
+            archive = acquire(beatmapSet);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(archive.fs.getPath("/")))
+            {
+                for (Path path : stream)
+                {
+                    if (Files.isRegularFile(path)) files.add(new File(beatmapSet, path.getFileName().toString()));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+        finally
+        {
+            if (archive != null) release(archive);
+        }
+
+        return files.toArray(new File[0]);
+    }
+
+    /**
+     * Open a file in a beatmap set.
+     *
+     * @param file File on the disk or in an archive
+     * @return Input stream (The archive is released when the stream is closed)
+     * @throws IOException File read error
+     */
+    public static InputStream open(File file) throws IOException
+    {
+        if (!isInArchive(file)) return new FileInputStream(file);
+
+        Archive archive = acquire(file.getParentFile());
+        try
+        {
+            return new FilterInputStream(Files.newInputStream(archive.fs.getPath(file.getName())))
+            {
+                /** Released already (close() may be called more than once) */
+                private boolean closed = false;
+
+                @Override
+                public void close() throws IOException
+                {
+                    try
+                    {
+                        super.close();
+                    }
+                    finally
+                    {
+                        if (!closed) release(archive);
+                        closed = true;
+                    }
+                }
+            };
+        }
+        catch (IOException | RuntimeException e)
+        {
+            release(archive);
+            throw e;
+        }
+    }
+
+    /**
+     * Read all the bytes of a file in a beatmap set.
+     *
+     * @param file File on the disk or in an archive
+     * @return Bytes
+     * @throws IOException File read error
+     */
+    public static byte[] readAllBytes(File file) throws IOException
+    {
+        if (!isInArchive(file)) return Files.readAllBytes(file.toPath());
+
+        Archive archive = acquire(file.getParentFile());
+        try
+        {
+            return Files.readAllBytes(archive.fs.getPath(file.getName()));
+        }
+        finally
+        {
+            release(archive);
+        }
+    }
+
+    /**
+     * Get the size of a file in a beatmap set.
+     *
+     * @param file File on the disk or in an archive
+     * @return Size in bytes (0 if it doesn't exist)
+     */
+    public static long length(File file)
+    {
+        if (!isInArchive(file)) return file.length();
+
+        Archive archive = null;
+        try
+        {
+            archive = acquire(file.getParentFile());
+            return Files.size(archive.fs.getPath(file.getName()));
+        }
+        catch (IOException | RuntimeException e)
+        {
+            return 0;
+        }
+        finally
+        {
+            if (archive != null) release(archive);
+        }
+    }
+
+    /**
+     * Get the last modified time of a file in a beatmap set. Files in an
+     * archive use the time of the archive.
+     *
+     * @param file File on the disk or in an archive
+     * @return Last modified time
+     */
+    public static long lastModified(File file)
+    {
+        return isInArchive(file) ? file.getParentFile().lastModified() : file.lastModified();
+    }
+
+    /**
+     * Get the URI of a file in a beatmap set. Files in an archive have
+     * "jar:file:...!/entry" URIs, which URL.openStream() can read. (It
+     * opens the archive itself, the URI doesn't need the FileSystem open)
+     *
+     * @param file File on the disk or in an archive
+     * @return URI
+     * @throws IOException Archive read error
+     */
+    public static URI toUri(File file) throws IOException
+    {
+        if (!isInArchive(file)) return file.toURI();
+
+        Archive archive = acquire(file.getParentFile());
+        try
+        {
+            return archive.fs.getPath(file.getName()).toUri();
+        }
+        finally
+        {
+            release(archive);
+        }
+    }
+
+    /**
+     * Get the open FileSystem of an archive, and open it if it's not open
+     * or the archive has changed. Every acquire() must be followed by a
+     * release().
+     *
+     * @param file The .osz file
+     * @return Open archive
+     * @throws IOException Archive read error
+     */
+    private static Archive acquire(File file) throws IOException
+    {
+        File key = file.getAbsoluteFile();
+        long modified = file.lastModified();
+        long length = file.length();
+
+        synchronized (ARCHIVES)
+        {
+            Archive open = ARCHIVES.get(key);
+            if (open != null && open.modified == modified && open.length == length)
+            {
+                open.users++;
+                return open;
+            }
+        }
+
+        // Open it outside of the lock, so different archives are opened in parallel.
+        Archive opened = new Archive(FileSystems.newFileSystem(file.toPath(), (ClassLoader) null), modified, length);
+
+        synchronized (ARCHIVES)
+        {
+            Archive open = ARCHIVES.get(key);
+            if (open != null && open.modified == modified && open.length == length)
+            {
+                // Another thread opened it first.
+                closeQuietly(opened);
+                open.users++;
+                return open;
+            }
+
+            // The old one is closed when its last reader is done.
+            if (open != null)
+            {
+                open.stale = true;
+                if (open.users == 0) closeQuietly(open);
+            }
+
+            opened.users = 1;
+            ARCHIVES.put(key, opened);
+            return opened;
+        }
+    }
+
+    /**
+     * Release an archive from acquire(). It's closed if it's stale, or if
+     * there are too many idle archives open.
+     *
+     * @param archive Open archive
+     */
+    private static void release(Archive archive)
+    {
+        synchronized (ARCHIVES)
+        {
+            archive.users--;
+            if (archive.users > 0) return;
+            if (archive.stale)
+            {
+                closeQuietly(archive);
+                return;
+            }
+
+            // Close the least recently used idle archives over the limit.
+            int idle = 0;
+            for (Archive open : ARCHIVES.values())
+            {
+                if (open.users == 0) idle++;
+            }
+            Iterator<Archive> iterator = ARCHIVES.values().iterator();
+            while (idle > MAX_IDLE_ARCHIVES && iterator.hasNext())
+            {
+                Archive open = iterator.next();
+                if (open.users != 0) continue;
+                iterator.remove();
+                closeQuietly(open);
+                idle--;
+            }
+        }
+    }
+
+    /**
+     * Close an archive, errors are only printed.
+     *
+     * @param archive Archive
+     */
+    private static void closeQuietly(Archive archive)
+    {
+        try
+        {
+            archive.fs.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * An archive opened as a zip FileSystem, shared by its readers.
+     */
+    private static class Archive
+    {
+        /** The zip FileSystem */
+        private final FileSystem fs;
+
+        /** Modified time of the archive when it was opened */
+        private final long modified;
+
+        /** Size of the archive when it was opened */
+        private final long length;
+
+        /** Number of readers (Guarded by ARCHIVES) */
+        private int users = 0;
+
+        /** The archive has changed, close it when the last reader is done (Guarded by ARCHIVES) */
+        private boolean stale = false;
+
+        /**
+         * Wrap an opened archive.
+         *
+         * @param fs The zip FileSystem
+         * @param modified Modified time of the archive
+         * @param length Size of the archive
+         */
+        private Archive(FileSystem fs, long modified, long length)
+        {
+            this.fs = fs;
+            this.modified = modified;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import greenfoot.GreenfootImage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class prepares beatmaps in the background, so starting a song
+ * never blocks the game to read the chart, the audio and the background.
+ *
+ * A load has three stages that run at the same time on the loader
+ * threads: the audio (Decoded to the AudioCache if it's not decoded yet),
+ * the chart (Notes, and the music from the decoded audio) and the
+ * background (Decoded at the size of the world). The song select calls
+ * prefetch() when the pointer rests on a chart, and load() when it's
+ * clicked, which gives the prefetched load if there is one. The LoadingWorld shows the progress
+ * of the load and starts the game when it's done.
+ *
+ * At most MAX_LOADS loads are kept. Prefetching another chart cancels the
+ * oldest one. Cancelling is checked while the audio is read, before each
+ * stage starts and after the chart is read, instead of interrupting the
+ * threads, since an interrupt closes the chart cache files that are being
+ * read.
+ *
+ * @author agent
+ * @since 2026-10-18 04:48
+ */
+@SuppressWarnings("WeakerAccess")
+public class BeatmapLoader
+{
+    /** Max number of loads that are running, waiting or done but not taken */
+    private static final int MAX_LOADS = 3;
+
+    /** Loader threads (One for each stage) */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(3, runnable ->
+    {
+        Thread thread = new Thread(runnable, "Beatmap loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Loads by chart key (See getKey()), from the oldest to the newest. (Only used on the game thread) */
+    private static final Map<String, Load> LOADS = new LinkedHashMap<>();
+
+    /**
+     * Start preparing a chart in the background. If it's already being
+     * prepared, it becomes the newest load instead.
+     *
+     * @param chart Library chart
+     */
+    public static void prefetch(LibraryChart chart)
+    {
+        String key = getKey(chart);
+        Load load = LOADS.remove(key);
+
+        if (load == null)
+        {
+            // Make space by cancelling the oldest loads.
+            Iterator<Load> oldest = LOADS.values().iterator();
+            while (LOADS.size() >= MAX_LOADS)
+            {
+                oldest.next().cancel();
+                oldest.remove();
+            }
+
+            load = new Load(chart);
+        }
+        LOADS.put(key, load);
+    }
+
+    /**
+     * Get the load of a chart to play it: the prefetched one, or a new one
+     * if it was never prefetched. The other loads are cancelled, since the
+     * song select is being left.
+     *
+     * @param chart Library chart
+     * @return Load
+     */
+    public static Load load(LibraryChart chart)
+    {
+        Load load = LOADS.remove(getKey(chart));
+        cancelAll();
+
+        return load == null ? new Load(chart) : load;
+    }
+
+    /**
+     * Cancel all the prefetched loads.
+     */
+    public static void cancelAll()
+    {
+        LOADS.values().forEach(Load::cancel);
+        LOADS.clear();
+    }
+
+    /**
+     * Get the key of a chart.
+     *
+     * @param chart Library chart
+     * @return Key
+     */
+    private static String getKey(LibraryChart chart)
+    {
+        return chart.getFile().getPath() + "#" + chart.getDifficulty();
+    }
+
+    /**
+     * A chart being prepared.
+     */
+    public static class Load
+    {
+        /** Library chart */
+        private final LibraryChart chart;
+
+        /** Stage: the notes and the music */
+        private final Future<Beatmap> beatmap;
+
+        /** Stage: the audio file, decoded to the audio cache (Submitted first, the chart stage waits for it) */
+        private final Future<File> audio;
+
+        /** Stage: the background at the size of the world */
+        private final Future<GreenfootImage> background;
+
+        /** Bytes of the audio file that are read, and its size */
+        private volatile long audioRead, audioLength;
+
+        /** Is the load cancelled? (Checked by the loader threads) */
+        private volatile boolean cancelled = false;
+
+        /** Music of the chart stage when it's read (Closed if the load is cancelled, guarded by this) */
+        private Music music;
+
+        /**
+         * Start loading a chart.
+         *
+         * @param chart Library chart
+         */
+        private Load(LibraryChart chart)
+        {
+            this.chart = chart;
+
+            File file = chart.getFile();
+            audio = POOL.submit(() -> decodeAudio(BeatmapReader.findAudio(file, chart.getMetadata().getAudioFilename())));
+            beatmap = POOL.submit(() -> cancelled ? null : readBeatmap(file));
+            background = POOL.submit(() -> cancelled ? null : readBackground(file));
+        }
+
+        /**
+         * Read the background at the size of the world. (Runs on the pool)
+         * The background and its hash are taken from the index when the
+         * chart is in it.
+         *
+         * @param file Chart file
+         * @return Background (Null if there's none)
+         */
+        private GreenfootImage readBackground(File file)
+        {
+            LibrarySet set = chart.getSet();
+            if (set == null) return BeatmapReader.readBackground(file.getParentFile(), Constants.WIDTH, Constants.HEIGHT);
+            return BeatmapReader.readBackground(set, Constants.WIDTH, Constants.HEIGHT);
+        }
+
+        /**
+         * Decode the audio file to the audio cache, if it's not decoded
+         * yet. (Runs on the pool)
+         *
+         * @param file Audio file
+         * @return File to play (Null if it can't be decoded)
+         */
+        private File decodeAudio(File file)
+        {
+            audioLength = BeatmapFiles.length(file);
+            try
+            {
+                long hash = chart.getAudioHash() != 0 ? chart.getAudioHash() : ContentHash.hash(file);
+                return AudioCache.prepare(file, hash, read -> audioRead = read, () -> cancelled);
+            }
+            catch (IOException e)
+            {
+                // The chart stage tries again and reports it.
+                if (!cancelled) e.printStackTrace();
+                return null;
+            }
+        }
+
+        /**
+         * Read the chart and its music from the decoded audio. (Runs on the
+         * pool) If the load is cancelled while it's read, nobody will take
+         * the music, so it's closed here. Errors are thrown, and get()
+         * gives null for them.
+         *
+         * @param file Chart file
+         * @return Beatmap (Null if it's cancelled)
+         * @throws IOException The chart or the music can't be read
+         * @throws InterruptedException Interrupted while waiting for the audio stage
+         * @throws ExecutionException The audio stage failed
+         */
+        private Beatmap readBeatmap(File file) throws IOException, InterruptedException, ExecutionException
+        {
+            Beatmap read = BeatmapReader.load(file, chart.getDifficulty(), audio.get());
+            if (read.getMusic() == null) throw new IOException("Error: " + file + " has no music.");
+
+            synchronized (this)
+            {
+                if (!cancelled)
+                {
+                    music = read.getMusic();
+                    return read;
+                }
+            }
+
+            if (read.getMusic() != null) read.getMusic().close();
+            return null;
+        }
+
+        /**
+         * Check if all the stages are done.
+         *
+         * @return Done or not
+         */
+        public boolean isDone()
+        {
+            return beatmap.isDone() && audio.isDone() && background.isDone();
+        }
+
+        /**
+         * Get the progress of the load. Each stage is a third of it.
+         *
+         * @return Progress (0 to 1)
+         */
+        public double getProgress()
+        {
+            double audioProgress = audio.isDone() ? 1 : audioLength <= 0 ? 0 : Math.min(1, (double) audioRead / audioLength);
+            return ((beatmap.isDone() ? 1 : 0) + audioProgress + (background.isDone() ? 1 : 0)) / 3;
+        }
+
+        /**
+         * Get the prepared beatmap. This waits for the stages that are not
+         * done yet.
+         *
+         * @return Prepared beatmap (Null if it's cancelled or the chart or its music can't be read)
+         */
+        public PreparedBeatmap get()
+        {
+            if (cancelled) return null;
+
+            try
+            {
+                Beatmap prepared = beatmap.get();
+                GreenfootImage image;
+                try
+                {
+                    image = background.get();
+                }
+                catch (ExecutionException e)
+                {
+                    // Read it again when it's drawn.
+                    e.printStackTrace();
+                    image = null;
+                }
+                return prepared == null ? null : new PreparedBeatmap(prepared, image);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                // The load failed on the pool, tell the player now that it's taken.
+                e.printStackTrace();
+                if (e.getCause() instanceof IOException) BeatmapReader.showReadError((IOException) e.getCause());
+            }
+            catch (CancellationException e)
+            {
+                e.printStackTrace();
+            }
+            return null;
+        }
+
+        /**
+         * Cancel the load. Waiting stages are removed from the pool, the
+         * audio decoding stops at the next read, and the music of the chart
+         * stage is closed (Here if it's read, or by the stage when it's
+         * done reading).
+         */
+        public void cancel()
+        {
+            synchronized (this)
+            {
+                cancelled = true;
+                if (music != null) music.close();
+                music = null;
+            }
+
+            audio.cancel(false);
+            beatmap.cancel(false);
+            background.cancel(false);
+        }
+
+        // ###################
+        // Getters and Setters
+        // ###################
+
+        public LibraryChart getChart()
+        {
+            return chart;
+        }
+
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+    }
+}
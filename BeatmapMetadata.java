@@ -0,0 +1,272 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The header metadata of a chart that the game uses, with typed fields.
+ * This is kept for every difficulty in the library, so the other header
+ * properties (Editor settings, etc.) are dropped, and the strings can be
+ * shared between the difficulties of a set with a string pool. (Tags are
+ * usually the same for every difficulty, so they are stored once per set.)
+ *
+ * @author agent
+ * @since 2026-10-18 04:32
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BeatmapMetadata
+{
+    /** Default OverallDifficulty when a chart doesn't have one (Same as osu!) */
+    private static final double DEFAULT_OVERALL_DIFFICULTY = 5;
+
+    private final String title;
+    private final String titleUnicode;
+    private final String artist;
+    private final String artistUnicode;
+    private final String creator;
+    private final String version;
+
+    /** Search tags, separated by spaces (Can be null) */
+    private final String tags;
+
+    /** Audio file name in the set */
+    private final String audioFilename;
+
+    /** Background image file name in the set (Can be null) */
+    private final String background;
+
+    /** Game mode (3 = mania) */
+    private final int mode;
+
+    /** Key count (CircleSize in mania) */
+    private final int keyCount;
+
+    /** Overall difficulty, used for the judgement windows */
+    private final double overallDifficulty;
+
+    /** Time to start the song preview in ms (-1 = not set) */
+    private final int previewTime;
+
+    /**
+     * Construct a metadata object.
+     *
+     * @param title Title
+     * @param titleUnicode Title in unicode
+     * @param artist Artist
+     * @param artistUnicode Artist in unicode
+     * @param creator Creator of the chart
+     * @param version Difficulty name
+     * @param tags Search tags
+     * @param audioFilename Audio file name
+     * @param background Background file name
+     * @param mode Game mode
+     * @param keyCount Key count
+     * @param overallDifficulty Overall difficulty
+     * @param previewTime Preview time in ms
+     */
+    public BeatmapMetadata(String title, String titleUnicode, String artist, String artistUnicode,
+                           String creator, String version, String tags, String audioFilename, String background,
+                           int mode, int keyCount, double overallDifficulty, int previewTime)
+    {
+        this.title = title;
+        this.titleUnicode = titleUnicode;
+        this.artist = artist;
+        this.artistUnicode = artistUnicode;
+        this.creator = creator;
+        this.version = version;
+        this.tags = tags;
+        this.audioFilename = audioFilename;
+        this.background = background;
+        this.mode = mode;
+        this.keyCount = keyCount;
+        this.overallDifficulty = overallDifficulty;
+        this.previewTime = previewTime;
+    }
+
+    /**
+     * Create metadata from the header properties of a chart.
+     *
+     * @param properties Header properties (Normalized to the osu! keys)
+     * @return Metadata
+     */
+    public static BeatmapMetadata fromProperties(Map<String, String> properties)
+    {
+        return fromProperties(properties, null);
+    }
+
+    /**
+     * Create metadata from the header properties of a chart, sharing the
+     * strings with a string pool.
+     *
+     * @param properties Header properties (Normalized to the osu! keys)
+     * @param pool String pool (Null = don't share)
+     * @return Metadata
+     */
+    public static BeatmapMetadata fromProperties(Map<String, String> properties, Map<String, String> pool)
+    {
+        return new BeatmapMetadata(
+                dedupe(pool, properties.get("Title")),
+                dedupe(pool, properties.get("TitleUnicode")),
+                dedupe(pool, properties.get("Artist")),
+                dedupe(pool, properties.get("ArtistUnicode")),
+                dedupe(pool, properties.get("Creator")),
+                dedupe(pool, properties.get("Version")),
+                dedupe(pool, properties.get("Tags")),
+                dedupe(pool, properties.get("AudioFilename")),
+                dedupe(pool, properties.get("Background")),
+                (int) parseNumber(properties.get("Mode"), 0),
+                (int) parseNumber(properties.get("CircleSize"), 0),
+                parseNumber(properties.get("OverallDifficulty"), DEFAULT_OVERALL_DIFFICULTY),
+                (int) parseNumber(properties.get("PreviewTime"), -1));
+    }
+
+    /**
+     * Read metadata written by write().
+     *
+     * @param in Input
+     * @param pool String pool (Null = don't share)
+     * @return Metadata
+     * @throws IOException Read error
+     */
+    public static BeatmapMetadata read(DataInputStream in, Map<String, String> pool) throws IOException
+    {
+        return new BeatmapMetadata(readString(in, pool), readString(in, pool), readString(in, pool),
+                readString(in, pool), readString(in, pool), readString(in, pool), readString(in, pool),
+                readString(in, pool), readString(in, pool), in.readInt(), in.readInt(), in.readDouble(), in.readInt());
+    }
+
+    /**
+     * Write the metadata.
+     *
+     * @param out Output
+     * @throws IOException Write error
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        for (String text : new String[]{title, titleUnicode, artist, artistUnicode, creator, version, tags, audioFilename, background})
+        {
+            out.writeUTF(text == null ? "" : text);
+        }
+        out.writeInt(mode);
+        out.writeInt(keyCount);
+        out.writeDouble(overallDifficulty);
+        out.writeInt(previewTime);
+    }
+
+    /**
+     * Read a string written by write(). ("" = null)
+     *
+     * @param in Input
+     * @param pool String pool
+     * @return String
+     * @throws IOException Read error
+     */
+    private static String readString(DataInputStream in, Map<String, String> pool) throws IOException
+    {
+        String text = in.readUTF();
+        return text.isEmpty() ? null : dedupe(pool, text);
+    }
+
+    /**
+     * Get the shared copy of a string from a pool.
+     *
+     * @param pool String pool (Null = don't share)
+     * @param text String
+     * @return Shared string
+     */
+    private static String dedupe(Map<String, String> pool, String text)
+    {
+        if (pool == null || text == null) return text;
+        return pool.computeIfAbsent(text, key -> key);
+    }
+
+    /**
+     * Parse a number property.
+     *
+     * @param text Text (Can be null)
+     * @param defaultValue Value when it's missing or wrong
+     * @return Number
+     */
+    private static double parseNumber(String text, double defaultValue)
+    {
+        if (text == null) return defaultValue;
+
+        try
+        {
+            return Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public String getTitleUnicode()
+    {
+        return titleUnicode;
+    }
+
+    public String getArtist()
+    {
+        return artist;
+    }
+
+    public String getArtistUnicode()
+    {
+        return artistUnicode;
+    }
+
+    public String getCreator()
+    {
+        return creator;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public String getTags()
+    {
+        return tags;
+    }
+
+    public String getAudioFilename()
+    {
+        return audioFilename;
+    }
+
+    public String getBackground()
+    {
+        return background;
+    }
+
+    public int getMode()
+    {
+        return mode;
+    }
+
+    public int getKeyCount()
+    {
+        return keyCount;
+    }
+
+    public double getOverallDifficulty()
+    {
+        return overallDifficulty;
+    }
+
+    public int getPreviewTime()
+    {
+        return previewTime;
+    }
+}
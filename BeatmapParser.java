@@ -0,0 +1,677 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A single-pass tokenizer for .osu files. The file is streamed through
+ * one reusable byte buffer, and the fields are parsed straight out of
+ * that buffer, so no String or String[] is created for the timing points
+ * and hit objects lines.
+ *
+ * The .osu format is UTF-8, but every section name, number and separator
+ * is ASCII, so only the values of the header properties are decoded.
+ *
+ * Very large files (marathon charts) are parsed with parseParallel(),
+ * which splits the [HitObjects] section into line-aligned chunks and
+ * parses them on the fork/join pool.
+ *
+ * @author agent
+ * @since 2026-10-18 04:16
+ */
+@SuppressWarnings("WeakerAccess")
+public class BeatmapParser
+{
+    /** Size of the read buffer */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Width of the osu! playfield, used to calculate the column of a hit object. */
+    private static final int PLAYFIELD_WIDTH = 512;
+
+    /** Files larger than this are parsed with parseParallel() */
+    public static final long PARALLEL_THRESHOLD = 1024 * 1024;
+
+    /** Chunks of the [HitObjects] section smaller than this are not split further. */
+    private static final int PARALLEL_CHUNK_SIZE = 128 * 1024;
+
+    /** The sections of a .osu file */
+    private enum Section
+    {
+        NONE, GENERAL, EDITOR, METADATA, DIFFICULTY, EVENTS, TIMING_POINTS, COLOURS, HIT_OBJECTS
+    }
+
+    /** Read buffer */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** Line buffer, only used when a line is split between two reads. */
+    private byte[] line = new byte[256];
+
+    /** Length of the pending line in the line buffer */
+    private int lineLength = 0;
+
+    /** Only read the header (Stop at [HitObjects]) or not */
+    private final boolean headerOnly;
+
+    /** Current section */
+    private Section section = Section.NONE;
+
+    /** Is the next line the first line of the file */
+    private boolean firstLine = true;
+
+    /** Bytes read from the stream before the current buffer */
+    private long offset = 0;
+
+    /** Byte offset of the line after [HitObjects] (-1 = not reached) */
+    private long hitObjectsOffset = -1;
+
+    /** Start and end (exclusive) of the current field, used by nextField() */
+    private int fieldStart, fieldEnd;
+
+    /** Parsed header properties */
+    private final Map<String, String> properties = new HashMap<>();
+
+    /** Parsed note times of each column */
+    private final IntList[] notes;
+
+    /** Parsed timing points */
+    private final IntList timingTimes = new IntList();
+    private double[] timingBeatLengths = new double[16];
+    private boolean[] timingUninherited = new boolean[16];
+
+    /**
+     * Construct a parser.
+     *
+     * @param headerOnly Only read the header or not.
+     */
+    private BeatmapParser(boolean headerOnly)
+    {
+        this.headerOnly = headerOnly;
+
+        notes = new IntList[Constants.NUM_COLS];
+        for (int i = 0; i < notes.length; i++)
+        {
+            notes[i] = new IntList(headerOnly ? 1 : 256);
+        }
+    }
+
+    /**
+     * Parse a .osu file.
+     *
+     * @param in Input stream of the .osu file.
+     * @param headerOnly Only read the header properties or not. (Stops
+     *                   reading at [HitObjects], the notes will be empty)
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    public static ChartData parse(InputStream in, boolean headerOnly) throws IOException
+    {
+        BeatmapParser parser = new BeatmapParser(headerOnly);
+        parser.read(in);
+        return parser.build();
+    }
+
+    /**
+     * Parse a large .osu file. The header is streamed like parse(), and
+     * then the [HitObjects] section is memory-mapped and parsed in
+     * parallel. The chunks are merged in file order, so the result is the
+     * same as parse().
+     *
+     * @param file The .osu file.
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    public static ChartData parseParallel(File file) throws IOException
+    {
+        // Read header
+        BeatmapParser parser = new BeatmapParser(true);
+        try (InputStream in = new FileInputStream(file))
+        {
+            parser.read(in);
+        }
+
+        // No notes
+        if (parser.hitObjectsOffset < 0) return parser.build();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long length = channel.size() - parser.hitObjectsOffset;
+            if (length > Integer.MAX_VALUE) throw new IOException("Error: Beatmap file is too large.");
+
+            // Map the section, it ends at the next section header or the end of file.
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, parser.hitObjectsOffset, length);
+            int end = findSectionEnd(buf);
+
+            // Parse chunks in parallel.
+            IntList[] notes = ForkJoinPool.commonPool().invoke(new HitObjectsTask(buf, 0, end));
+            System.arraycopy(notes, 0, parser.notes, 0, notes.length);
+        }
+
+        return parser.build();
+    }
+
+    /**
+     * Find the end of a section: the start of a line that starts with "[".
+     *
+     * @param buf Mapped section
+     * @return End index (exclusive)
+     */
+    private static int findSectionEnd(MappedByteBuffer buf)
+    {
+        int limit = buf.limit();
+        boolean lineStart = true;
+
+        for (int i = 0; i < limit; i++)
+        {
+            byte c = buf.get(i);
+            if (lineStart && c == '[') return i;
+            if (c == '\n') lineStart = true;
+            else if (c > ' ') lineStart = false;
+        }
+
+        return limit;
+    }
+
+    /**
+     * Read the stream line by line and process the lines.
+     *
+     * @param in Input stream
+     * @throws IOException File read error
+     */
+    private void read(InputStream in) throws IOException
+    {
+        int read;
+
+        outer:
+        while ((read = in.read(buffer, 0, buffer.length)) != -1)
+        {
+            int start = 0;
+
+            for (int i = 0; i < read; i++)
+            {
+                if (buffer[i] != '\n') continue;
+
+                // Process directly from the read buffer when possible.
+                boolean next;
+                if (lineLength == 0)
+                {
+                    next = processLine(buffer, start, i);
+                }
+                else
+                {
+                    appendLine(start, i);
+                    next = processLine(line, 0, lineLength);
+                    lineLength = 0;
+                }
+
+                start = i + 1;
+                if (!next)
+                {
+                    hitObjectsOffset = offset + start;
+                    lineLength = 0;
+                    break outer;
+                }
+            }
+
+            // Keep the unfinished line for the next read.
+            appendLine(start, read);
+            offset += read;
+        }
+
+        // The last line might not end with a line break.
+        if (lineLength > 0) processLine(line, 0, lineLength);
+    }
+
+    /**
+     * Process all the lines in a range of bytes.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void processLines(byte[] b, int from, int to)
+    {
+        int start = from;
+
+        for (int i = from; i < to; i++)
+        {
+            if (b[i] != '\n') continue;
+            processLine(b, start, i);
+            start = i + 1;
+        }
+
+        if (start < to) processLine(b, start, to);
+    }
+
+    /**
+     * Append part of the read buffer to the line buffer.
+     *
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void appendLine(int from, int to)
+    {
+        int length = to - from;
+        if (length <= 0) return;
+
+        if (lineLength + length > line.length)
+        {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+
+        System.arraycopy(buffer, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Process one line.
+     *
+     * @param b Bytes
+     * @param from Start index of the line (inclusive)
+     * @param to End index of the line (exclusive)
+     * @return Continue reading or not.
+     */
+    private boolean processLine(byte[] b, int from, int to)
+    {
+        // Skip the UTF-8 byte order mark
+        if (firstLine)
+        {
+            firstLine = false;
+            if (to - from >= 3 && b[from] == (byte) 0xEF && b[from + 1] == (byte) 0xBB && b[from + 2] == (byte) 0xBF)
+            {
+                from += 3;
+            }
+        }
+
+        // Trim (This also removes the \r of windows line breaks)
+        while (from < to && b[from] <= ' ') from++;
+        while (to > from && b[to - 1] <= ' ') to--;
+
+        // Skip empty lines and comments
+        if (from == to) return true;
+        if (b[from] == '/' && to - from > 1 && b[from + 1] == '/') return true;
+
+        // Section header
+        if (b[from] == '[' && b[to - 1] == ']')
+        {
+            section = findSection(b, from, to);
+            return !(headerOnly && section == Section.HIT_OBJECTS);
+        }
+
+        switch (section)
+        {
+            case GENERAL:
+            case EDITOR:
+            case METADATA:
+            case DIFFICULTY:
+                readProperty(b, from, to);
+                break;
+            case TIMING_POINTS:
+                readTimingPoint(b, from, to);
+                break;
+            case EVENTS:
+                readEvent(b, from, to);
+                break;
+            case HIT_OBJECTS:
+                readHitObject(b, from, to);
+                break;
+            default:
+                // Colours are not used.
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Find the section with the name of a section header line.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return Section
+     */
+    private static Section findSection(byte[] b, int from, int to)
+    {
+        if (matches(b, from, to, "[General]")) return Section.GENERAL;
+        if (matches(b, from, to, "[Editor]")) return Section.EDITOR;
+        if (matches(b, from, to, "[Metadata]")) return Section.METADATA;
+        if (matches(b, from, to, "[Difficulty]")) return Section.DIFFICULTY;
+        if (matches(b, from, to, "[Events]")) return Section.EVENTS;
+        if (matches(b, from, to, "[TimingPoints]")) return Section.TIMING_POINTS;
+        if (matches(b, from, to, "[Colours]")) return Section.COLOURS;
+        if (matches(b, from, to, "[HitObjects]")) return Section.HIT_OBJECTS;
+        return Section.NONE;
+    }
+
+    /**
+     * Check if a range of bytes equals an ASCII string.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @param text ASCII string
+     * @return Equals or not
+     */
+    private static boolean matches(byte[] b, int from, int to, String text)
+    {
+        if (to - from != text.length()) return false;
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (b[from + i] != text.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Read a "Key: Value" property line.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void readProperty(byte[] b, int from, int to)
+    {
+        // Find the separator
+        int colon = from;
+        while (colon < to && b[colon] != ':') colon++;
+        if (colon == to) return;
+
+        // Trim key and value
+        int keyEnd = colon;
+        while (keyEnd > from && b[keyEnd - 1] <= ' ') keyEnd--;
+        int valueStart = colon + 1;
+        while (valueStart < to && b[valueStart] <= ' ') valueStart++;
+
+        // Properties without values are the same as not having them.
+        if (keyEnd == from || valueStart == to) return;
+
+        properties.put(new String(b, from, keyEnd - from, StandardCharsets.US_ASCII),
+                new String(b, valueStart, to - valueStart, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read an event line. Only the background image event is used, and it
+     * is stored as the "Background" property.
+     * Format: 0,startTime,"filename",xOffset,yOffset
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void readEvent(byte[] b, int from, int to)
+    {
+        if (properties.containsKey("Background")) return;
+        fieldEnd = from - 1;
+
+        // Event type: 0 or "Background"
+        if (!nextField(b, to)) return;
+        if (!matches(b, fieldStart, fieldEnd, "0") && !matches(b, fieldStart, fieldEnd, "Background")) return;
+
+        // Skip start time, read file name.
+        if (!nextField(b, to) || !nextField(b, to)) return;
+        int start = fieldStart, end = fieldEnd;
+        while (start < end && b[start] <= ' ') start++;
+        while (end > start && b[end - 1] <= ' ') end--;
+        if (end - start >= 2 && b[start] == '"' && b[end - 1] == '"')
+        {
+            start++;
+            end--;
+        }
+
+        if (end > start) properties.put("Background", new String(b, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a timing point line.
+     * Format: time,beatLength,meter,sampleSet,sampleIndex,volume,uninherited,effects
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void readTimingPoint(byte[] b, int from, int to)
+    {
+        fieldEnd = from - 1;
+
+        // Time and beat length are required.
+        if (!nextField(b, to)) return;
+        int time = (int) parseDouble(b, fieldStart, fieldEnd);
+        if (!nextField(b, to)) return;
+        double beatLength = parseDouble(b, fieldStart, fieldEnd);
+
+        // Old versions do not have the uninherited field, they use negative beat lengths instead.
+        boolean uninherited = beatLength > 0;
+        for (int i = 0; i < 5 && nextField(b, to); i++)
+        {
+            if (i == 4) uninherited = parseInt(b, fieldStart, fieldEnd) == 1;
+        }
+
+        // Add timing point
+        int index = timingTimes.size();
+        if (index == timingBeatLengths.length)
+        {
+            timingBeatLengths = Arrays.copyOf(timingBeatLengths, index * 2);
+            timingUninherited = Arrays.copyOf(timingUninherited, index * 2);
+        }
+        timingTimes.add(time);
+        timingBeatLengths[index] = beatLength;
+        timingUninherited[index] = uninherited;
+    }
+
+    /**
+     * Read a hit object line.
+     * Format: x,y,time,type,hitSound,objectParams,hitSample
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     */
+    private void readHitObject(byte[] b, int from, int to)
+    {
+        fieldEnd = from - 1;
+
+        // Read x, skip y, read time.
+        if (!nextField(b, to)) throw new RuntimeException("Error: Beatmap format wrong.");
+        int x = parseInt(b, fieldStart, fieldEnd);
+        if (!nextField(b, to) || !nextField(b, to)) throw new RuntimeException("Error: Beatmap format wrong.");
+        int time = parseInt(b, fieldStart, fieldEnd);
+
+        // Deal with the weird format to get column
+        int col = x * Constants.NUM_COLS / PLAYFIELD_WIDTH;
+
+        // Exception: not composed correctly
+        if (x < 0 || col >= Constants.NUM_COLS)
+        {
+            throw new RuntimeException("Error: Beatmap format wrong.");
+        }
+
+        notes[col].add(time);
+    }
+
+    /**
+     * Move fieldStart and fieldEnd to the next comma separated field.
+     *
+     * @param b Bytes
+     * @param to End index of the line (exclusive)
+     * @return Is there a next field or not
+     */
+    private boolean nextField(byte[] b, int to)
+    {
+        if (fieldEnd >= to) return false;
+
+        fieldStart = fieldEnd + 1;
+        fieldEnd = fieldStart;
+        while (fieldEnd < to && b[fieldEnd] != ',') fieldEnd++;
+        return true;
+    }
+
+    /**
+     * Parse an integer from ASCII bytes. Decimals are truncated.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return Integer
+     */
+    static int parseInt(byte[] b, int from, int to)
+    {
+        while (from < to && b[from] == ' ') from++;
+
+        boolean negative = from < to && b[from] == '-';
+        if (negative || (from < to && b[from] == '+')) from++;
+        if (from >= to) throw new RuntimeException("Error: Beatmap format wrong.");
+
+        int result = 0;
+        for (int i = from; i < to; i++)
+        {
+            byte c = b[i];
+            if (c == '.' || c == ' ') break;
+            if (c < '0' || c > '9') throw new RuntimeException("Error: Beatmap format wrong.");
+            result = result * 10 + (c - '0');
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parse a decimal number from ASCII bytes.
+     *
+     * @param b Bytes
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return Number
+     */
+    static double parseDouble(byte[] b, int from, int to)
+    {
+        int start = from;
+        boolean negative = from < to && b[from] == '-';
+        if (negative || (from < to && b[from] == '+')) from++;
+
+        long digits = 0;
+        int scale = 0;
+        boolean dot = false;
+
+        for (int i = from; i < to; i++)
+        {
+            byte c = b[i];
+            if (c == '.' && !dot)
+            {
+                dot = true;
+            }
+            else if (c >= '0' && c <= '9' && digits < Long.MAX_VALUE / 10 - 10)
+            {
+                digits = digits * 10 + (c - '0');
+                if (dot) scale++;
+            }
+            else if (!(c >= '0' && c <= '9' && dot))
+            {
+                // Exponents and other unusual formats, let Java handle them.
+                return Double.parseDouble(new String(b, start, to - start, StandardCharsets.US_ASCII));
+            }
+        }
+
+        double result = digits / Math.pow(10, scale);
+        return negative ? -result : result;
+    }
+
+    /**
+     * Build the chart data from the parsed results.
+     *
+     * @return Chart data
+     */
+    private ChartData build()
+    {
+        IntBuffer[] noteTimes = new IntBuffer[notes.length];
+        for (int i = 0; i < notes.length; i++)
+        {
+            noteTimes[i] = IntBuffer.wrap(notes[i].toSortedArray());
+        }
+
+        int timingCount = timingTimes.size();
+        return new ChartData(properties, noteTimes, timingTimes.toArray(),
+                Arrays.copyOf(timingBeatLengths, timingCount), Arrays.copyOf(timingUninherited, timingCount));
+    }
+
+    /**
+     * A fork/join task that parses a line-aligned chunk of the [HitObjects]
+     * section into note times of each column.
+     */
+    private static class HitObjectsTask extends RecursiveTask<IntList[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        /** Mapped section */
+        private final MappedByteBuffer buf;
+
+        /** Start index of the chunk (inclusive) */
+        private final int from;
+
+        /** End index of the chunk (exclusive) */
+        private final int to;
+
+        /**
+         * Construct a task
+         *
+         * @param buf Mapped section
+         * @param from Start index of the chunk, at the start of a line.
+         * @param to End index of the chunk, at the start of a line or the end.
+         */
+        private HitObjectsTask(MappedByteBuffer buf, int from, int to)
+        {
+            this.buf = buf;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntList[] compute()
+        {
+            // Split at the first line break after the middle.
+            if (to - from > PARALLEL_CHUNK_SIZE)
+            {
+                int mid = from + (to - from) / 2;
+                while (mid < to && buf.get(mid - 1) != '\n') mid++;
+
+                if (mid < to)
+                {
+                    HitObjectsTask left = new HitObjectsTask(buf, from, mid);
+                    HitObjectsTask right = new HitObjectsTask(buf, mid, to);
+                    left.fork();
+                    IntList[] rightNotes = right.compute();
+                    IntList[] leftNotes = left.join();
+
+                    // Merge in file order.
+                    for (int i = 0; i < leftNotes.length; i++)
+                    {
+                        leftNotes[i].addAll(rightNotes[i]);
+                    }
+                    return leftNotes;
+                }
+            }
+
+            // Copy the chunk out of the mapped buffer and parse it.
+            byte[] bytes = new byte[to - from];
+            MappedByteBuffer view = (MappedByteBuffer) buf.duplicate();
+            view.position(from);
+            view.get(bytes);
+
+            BeatmapParser parser = new BeatmapParser(false);
+            parser.section = Section.HIT_OBJECTS;
+            parser.firstLine = false;
+            parser.processLines(bytes, 0, bytes.length);
+            return parser.notes;
+        }
+    }
+}
@@ -1,10 +1,28 @@
-import greenfoot.sound.SoundFactory;
-
+import greenfoot.GreenfootImage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.*;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.IntBuffer;
+import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * A class to read beatmaps.
@@ -17,123 +35,147 @@ import java.util.Map;
 @SuppressWarnings("WeakerAccess")
 public class BeatmapReader
 {
+    /** Scaled images by ContentHash and size (Released when memory is low) */
+    private static final Map<String, SoftReference<BufferedImage>> SCALED_IMAGES = new ConcurrentHashMap<>();
+
+    /** "bg" as a word in a file name (Not a part of a word like "bgm") */
+    private static final Pattern BG_WORD = Pattern.compile("(^|[^a-z])bg([^a-z]|$)");
+
     /**
-     * Deserialize beatmap object from a .osu file.
+     * Deserialize beatmap object from a chart file. If the file has more
+     * than one chart, the first one is read.
      *
-     * @param file The .osu file.
+     * @param file The chart file.
      * @return Beatmap
      */
     public static Beatmap read(File file)
     {
-        Beatmap beatmap = new Beatmap();
+        return read(file, null);
+    }
+
+    /**
+     * Deserialize beatmap object from a chart file.
+     *
+     * @param file The chart file. (Any format in ChartFormats)
+     * @param difficulty Difficulty name. (Only needed when the file has more than one chart)
+     * @return Beatmap
+     */
+    public static Beatmap read(File file, String difficulty)
+    {
+        return read(file, difficulty, null);
+    }
 
+    /**
+     * Deserialize beatmap object from a chart file, with audio that is
+     * already decoded.
+     *
+     * @param file The chart file. (Any format in ChartFormats)
+     * @param difficulty Difficulty name. (Only needed when the file has more than one chart)
+     * @param music File to play from AudioCache (Null = decode it now)
+     * @return Beatmap
+     */
+    public static Beatmap read(File file, String difficulty, File music)
+    {
         try
         {
-            // File reader stuff
-            BufferedReader buf = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-            String line = buf.readLine();
-            boolean startReading = false;
+            return load(file, difficulty, music);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            showReadError(e);
+        }
 
-            while(line != null)
-            {
-                if (!startReading)
-                {
-                    // Start of HitObjects section
-                    if (line.equals("[HitObjects]")) startReading = true;
-                }
-                else
-                {
-                    String[] split = line.split(",");
+        return new Beatmap();
+    }
 
-                    // Deal with the weird format to get column
-                    int col = -1;
-                    switch (split[0])
-                    {
-                        case "64": col = 0; break;
-                        case "192": col = 1; break;
-                        case "320": col = 2; break;
-                        case "448": col = 3; break;
-                    }
+    /**
+     * Show the player why a chart can't be read. This opens a dialog, so
+     * only call it on the game thread.
+     *
+     * @param e The read error
+     */
+    public static void showReadError(IOException e)
+    {
+        if (e instanceof FileNotFoundException || e instanceof NoSuchFileException)
+        {
+            JOptionPane.showMessageDialog(null, "ERROR: File not found");
+        }
+        else
+        {
+            JOptionPane.showMessageDialog(null, "ERROR: File read error");
+        }
+    }
 
-                    // Exception: not composed correctly
-                    if (col == -1)
-                    {
-                        throw new RuntimeException("Error: Beatmap format wrong.");
-                    }
+    /**
+     * Deserialize beatmap object from a chart file, with audio that is
+     * already decoded. Unlike read(), errors are thrown instead of shown,
+     * so the beatmap is never half read, and it can run on any thread.
+     *
+     * @param file The chart file. (Any format in ChartFormats)
+     * @param difficulty Difficulty name. (Only needed when the file has more than one chart)
+     * @param music File to play from AudioCache (Null = decode it now)
+     * @return Beatmap
+     * @throws IOException File read error
+     */
+    public static Beatmap load(File file, String difficulty, File music) throws IOException
+    {
+        Beatmap beatmap = new Beatmap();
 
-                    // Add note to beatmap.
-                    beatmap.getFuture(col).add(new NoteInformation(Integer.parseInt(split[2]), col));
-                }
+        // Load the compiled chart, or parse the file if it's not compiled yet.
+        ChartData chart = ChartCache.load(file, difficulty);
+        Map<String, String> properties = chart.getProperties();
 
-                // Read next line.
-                line = buf.readLine();
-            }
+        // Validate properties.
+        validateProperties(properties);
+        beatmap.setMetadata(BeatmapMetadata.fromProperties(properties));
 
-            // Read properties.
-            Map<String, String> properties = readProperties(file);
+        // Add notes to beatmap.
+        IntBuffer[] notes = chart.getNotes();
+        for (int col = 0; col < notes.length; col++)
+        {
+            beatmap.setFuture(col, notes[col]);
+        }
 
-            // Validate properties.
-            validateProperties(properties);
-            beatmap.setProperties(properties);
+        // Compile the timing points for note positioning.
+        beatmap.setTimeline(new ScrollTimeline(chart));
 
-            // Set beatmap music (There's index out of bounds bug when Greenfoot reads mp3)
-            File audio = new File(file.getParentFile(), properties.get("AudioFilename"));
-            beatmap.setMusic(SoundFactory.getInstance().createSound(audio.toURI().toString().replace("mp3", "wav"), false));
+        // Set beatmap music (Decoded to wav, there's index out of bounds bug when Greenfoot reads mp3)
+        if (music == null) music = AudioCache.getPlayable(findAudio(file, properties.get("AudioFilename")));
+        beatmap.setMusic(createMusic(music));
 
-            // Set meta data
-            beatmap.setFile(file);
-            beatmap.setId(Integer.parseInt(file.getParentFile().getName().split(" ")[0]));
-        }
-        catch (FileNotFoundException e)
-        {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "ERROR: File not found");
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "ERROR: File read error");
-        }
+        // Set meta data
+        beatmap.setFile(file);
+        beatmap.setId(parseId(file.getParentFile()));
 
         return beatmap;
     }
 
     /**
-     * Read the properties from a beatmap.
+     * Read the properties from a beatmap. Only the header is read, the
+     * parser stops at the [HitObjects] section.
      *
      * @param file Beatmap file
      * @return Properties
      */
     public static Map<String, String> readProperties(File file)
     {
-        // Read properties to a map.
-        Map<String, String> properties = new HashMap<>();
+        return readProperties(file, null);
+    }
 
+    /**
+     * Read the properties from a chart in a beatmap file. Only the header
+     * is read.
+     *
+     * @param file Beatmap file
+     * @param difficulty Difficulty name. (Only needed when the file has more than one chart)
+     * @return Properties
+     */
+    public static Map<String, String> readProperties(File file, String difficulty)
+    {
         try
         {
-            // File reader stuff
-            BufferedReader buf = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-            String line = buf.readLine();
-
-            while(line != null)
-            {
-                // Start of HitObjects section
-                if (line.equals("[HitObjects]")) break;
-
-                // Read properties
-                line = line.replace(": ", ":");
-                if (line.contains(":"))
-                {
-                    String[] split = line.split(":");
-                    if (split.length == 2)
-                    {
-                        properties.put(split[0], split[1]);
-                    }
-                }
-
-                // Read next line.
-                line = buf.readLine();
-            }
+            return ChartFormats.get(file).read(file, difficulty, true).getProperties();
         }
         catch (FileNotFoundException e)
         {
@@ -146,15 +188,16 @@ public class BeatmapReader
             JOptionPane.showMessageDialog(null, "ERROR: File read error");
         }
 
-        return properties;
+        return new HashMap<>();
     }
 
     /**
-     * Validate the properties of a beatmap.
+     * Validate the properties of a beatmap. Every chart format normalizes
+     * its properties to the osu! keys, so this works for all of them.
      *
      * @param properties The properties.
      */
-    private static void validateProperties(Map<String, String> properties)
+    public static void validateProperties(Map<String, String> properties)
     {
         // Make sure mode is mania.
         if (!properties.get("Mode").equals("3"))
@@ -170,51 +213,52 @@ public class BeatmapReader
     }
 
     /**
-     * List all beatmaps under directory.
+     * List all beatmaps under directory. The sets are checked in parallel,
+     * and the result is sorted by name.
      *
      * @return All beatmaps' sub-directories.
      */
     public static ArrayList<File> listBeatmapSets()
     {
-        ArrayList<File> result = new ArrayList<>();
-
         File[] files = Constants.BEATMAP_DIRECTORY.listFiles();
         if (files == null) throw new RuntimeException("Error: Failed to get file list. (Maybe there are no files?)");
+        Arrays.sort(files);
 
-        // Loop through all files under the dir.
+        // Only directories and .osz archives could be beatmaps (Hidden ones are being imported)
+        List<File> candidates = new ArrayList<>();
         for (File file : files)
         {
-            // Only directories could be beatmaps
-            if (!file.isDirectory()) continue;
-
-            // Search sub directory to find: background.jpg or .png and .osu files.
-            File[] subFiles = file.listFiles();
-            if (subFiles == null) continue;
+            if (!(file.isDirectory() || BeatmapFiles.isArchive(file)) || file.getName().startsWith(".")) continue;
+            candidates.add(file);
+        }
 
-            boolean containsBackground = false;
-            boolean containsOsu = false;
+        ArrayList<File> result = new ArrayList<>();
+        for (File file : ParallelScan.map(candidates, file -> isBeatmapSet(file) ? file : null))
+        {
+            if (file != null) result.add(file);
+        }
 
-            for (File subFile : subFiles)
-            {
-                String fileName = subFile.getName().toLowerCase();
-                if (fileName.contains("background") && (fileName.contains("jpg") || fileName.contains("png")))
-                {
-                    containsBackground = true;
-                }
+        return result;
+    }
 
-                if (fileName.endsWith(".osu"))
-                {
-                    containsOsu = true;
-                }
-            }
+    /**
+     * Check if a directory or archive is a playable beatmap set: it has a
+     * background.jpg or .png and chart files.
+     *
+     * @param file Directory or archive
+     * @return Is beatmap set or not
+     */
+    private static boolean isBeatmapSet(File file)
+    {
+        File[] subFiles = BeatmapFiles.listFiles(file);
+        if (subFiles == null) return false;
 
-            if (containsBackground && containsOsu)
-            {
-                result.add(file);
-            }
+        for (File subFile : subFiles)
+        {
+            if (ChartFormats.isChart(subFile)) return findBackground(subFiles) != null;
         }
 
-        return result;
+        return false;
     }
 
     /**
@@ -230,7 +274,7 @@ public class BeatmapReader
 
         for (File file : files)
         {
-            if (file.isDirectory() && file.getName().split(" ")[0].equals(id))
+            if ((file.isDirectory() || BeatmapFiles.isArchive(file)) && file.getName().split(" ")[0].equals(id))
             {
                 return file;
             }
@@ -249,17 +293,21 @@ public class BeatmapReader
     {
         ArrayList<String> results = new ArrayList<>();
 
-        File[] files = beatmapSet.listFiles();
+        File[] files = BeatmapFiles.listFiles(beatmapSet);
         if (files == null) throw new RuntimeException("Error: Failed to get file list. (Maybe there are no files?)");
 
         for (File file : files)
         {
-            if (file.isFile() && file.getName().endsWith(".osu"))
+            ChartFormat format = ChartFormats.find(file);
+            if (format == null) continue;
+
+            try
             {
-                // Find the last set of "[]".
-                String[] split = file.getName().split("\\[");
-                String diff = split[split.length - 1].split("\\]")[0];
-                results.add(diff);
+                results.addAll(format.listDifficulties(file));
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
             }
         }
 
@@ -275,23 +323,286 @@ public class BeatmapReader
      */
     public static File findBeatmapByDifficulty(File beatmapSet, String difficulty)
     {
-        File[] files = beatmapSet.listFiles();
+        File[] files = BeatmapFiles.listFiles(beatmapSet);
         if (files == null) throw new RuntimeException("Error: Failed to get file list. (Maybe there are no files?)");
 
         for (File file : files)
         {
-            if (file.isFile() && file.getName().endsWith(".osu"))
+            ChartFormat format = ChartFormats.find(file);
+            if (format == null) continue;
+
+            try
             {
-                // Find the last set of "[]".
-                String[] split = file.getName().split("\\[");
-                String diff = split[split.length - 1].split("\\]")[0];
-                if (diff.equalsIgnoreCase(difficulty))
+                for (String diff : format.listDifficulties(file))
                 {
-                    return file;
+                    if (diff.equalsIgnoreCase(difficulty))
+                    {
+                        return file;
+                    }
                 }
             }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
         }
 
         return null;
     }
+
+    /**
+     * Create the music of a beatmap. It's streamed if the audio device can
+     * play the file, otherwise (Eg. an mp3 that can't be decoded) it's
+     * played by Greenfoot.
+     *
+     * @param audio File to play from AudioCache
+     * @return Music
+     * @throws IOException File read error
+     */
+    public static Music createMusic(File audio) throws IOException
+    {
+        try
+        {
+            return new StreamingMusic(audio);
+        }
+        catch (UnsupportedAudioFileException | LineUnavailableException | IllegalArgumentException e)
+        {
+            e.printStackTrace();
+            return new GreenfootMusic(BeatmapFiles.toUri(audio).toString());
+        }
+    }
+
+    /**
+     * Find the audio file of a chart. (AudioCache gives the file to play)
+     *
+     * @param chart Chart file
+     * @param audioFilename Audio file name in the chart
+     * @return Audio file (On the disk or in an archive)
+     */
+    public static File findAudio(File chart, String audioFilename)
+    {
+        return new File(chart.getParentFile(), audioFilename);
+    }
+
+    /**
+     * Find the background image of a beatmap set. "background.jpg" or
+     * "background.png" is preferred, otherwise any image with "bg" or
+     * "background" in the name. (StepMania packs name them differently)
+     *
+     * @param beatmapSet Beatmap's sub-directory
+     * @return Background image (Null if not found)
+     */
+    public static File findBackground(File beatmapSet)
+    {
+        File[] files = BeatmapFiles.listFiles(beatmapSet);
+        return files == null ? null : findBackground(files);
+    }
+
+    /**
+     * Read the background image of a beatmap set, scaled to fill the
+     * height of an area and cropped to its width. This works for archives
+     * too, since the image is decoded from a stream instead of a path.
+     *
+     * @param beatmapSet Beatmap's sub-directory or archive
+     * @param width Width of the area
+     * @param height Height of the area
+     * @return Background image (Null if not found)
+     */
+    public static GreenfootImage readBackground(File beatmapSet, int width, int height)
+    {
+        File background = findBackground(beatmapSet);
+        return background == null ? null : readImage(background, 0, width, height);
+    }
+
+    /**
+     * Read the background image of an indexed beatmap set, the same as
+     * readBackground(File, int, int), but with the background and its
+     * ContentHash from the index, so the set isn't listed and the image
+     * isn't hashed again.
+     *
+     * @param beatmapSet Indexed beatmap set
+     * @param width Width of the area
+     * @param height Height of the area
+     * @return Background image (Null if not found)
+     */
+    public static GreenfootImage readBackground(LibrarySet beatmapSet, int width, int height)
+    {
+        File background = beatmapSet.getBackground();
+        return background == null ? null : readImage(background, beatmapSet.getBackgroundHash(), width, height);
+    }
+
+    /**
+     * Read an image in a beatmap set, scaled to fill the height of an area
+     * and cropped to its width. Scaled images are kept by ContentHash and
+     * size while there's memory for them, so the same image (Eg. when a
+     * song is played again) is only decoded once.
+     *
+     * @param file Image file (On the disk or in an archive)
+     * @param hash ContentHash of the image file (0 = hash it now)
+     * @param width Width of the area
+     * @param height Height of the area
+     * @return Image (Null if it can't be read)
+     */
+    public static GreenfootImage readImage(File file, long hash, int width, int height)
+    {
+        try
+        {
+            if (hash == 0) hash = ContentHash.hash(file);
+            String key = ContentHash.toHex(hash) + "@" + width + "x" + height;
+            SoftReference<BufferedImage> cached = SCALED_IMAGES.get(key);
+            BufferedImage scaled = cached == null ? null : cached.get();
+
+            if (scaled == null)
+            {
+                BufferedImage decoded = decodeImage(file, width, height);
+                if (decoded == null) return null;
+                scaled = scaleImage(decoded, width, height);
+
+                // Forget the images that were released, then keep this one.
+                SCALED_IMAGES.values().removeIf(reference -> reference.get() == null);
+                SCALED_IMAGES.put(key, new SoftReference<>(scaled));
+            }
+
+            // Copy, since the caller can draw on the image.
+            GreenfootImage image = new GreenfootImage(scaled.getWidth(), scaled.getHeight());
+            image.getAwtImage().createGraphics().drawImage(scaled, 0, 0, null);
+            return image;
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decode an image in a beatmap set close to the size it's drawn at.
+     * Only the part that is drawn is decoded (Region decode), and the
+     * decoder skips rows and columns (Source subsampling) so the decoded
+     * image is at least as big as the area but less than twice as big. A
+     * 1920x1080 background for a 204px cover is decoded as 216x216 this
+     * way, instead of allocating and decoding all 2 million pixels.
+     *
+     * @param file Image file (On the disk or in an archive)
+     * @param width Width of the area (The image fills the height and is cropped to this)
+     * @param height Height of the area
+     * @return Decoded image, not scaled to the exact size yet (Null if it's not an image)
+     * @throws IOException File read error
+     */
+    public static BufferedImage decodeImage(File file, int width, int height) throws IOException
+    {
+        try (InputStream in = BeatmapFiles.open(file);
+             ImageInputStream stream = ImageIO.createImageInputStream(in))
+        {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try
+            {
+                reader.setInput(stream, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+
+                // The part that is drawn: the full height, and the width that is not cropped.
+                int regionWidth = (int) Math.min(sourceWidth, Math.ceil((double) width * sourceHeight / height));
+                int subsampling = Math.max(1, sourceHeight / height);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, 0, Math.max(1, regionWidth), sourceHeight));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            }
+            finally
+            {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image to fill the height of an area, and crop it to the
+     * width of the area from the left. (How backgrounds and covers are
+     * drawn) It is halved first while it's more than twice as big, since
+     * scaling down a lot in one step skips most of the pixels.
+     *
+     * @param image Image
+     * @param width Width of the area
+     * @param height Height of the area
+     * @return Scaled image (ARGB, transparent on the right if the image is too narrow)
+     */
+    public static BufferedImage scaleImage(BufferedImage image, int width, int height)
+    {
+        int scaledWidth = Math.max(1, (int) (1.0 * image.getWidth() / image.getHeight() * height));
+
+        BufferedImage current = image;
+        while (current.getHeight() / 2 >= height)
+        {
+            current = drawScaled(current, current.getWidth() / 2, current.getHeight() / 2, current.getWidth() / 2);
+        }
+        return drawScaled(current, scaledWidth, height, width);
+    }
+
+    /**
+     * Draw an image scaled with bilinear interpolation, at the top left of
+     * a new ARGB image.
+     *
+     * @param image Image
+     * @param width Scaled width
+     * @param height Scaled height (Also the height of the new image)
+     * @param canvasWidth Width of the new image
+     * @return New image
+     */
+    private static BufferedImage drawScaled(BufferedImage image, int width, int height, int canvasWidth)
+    {
+        BufferedImage result = new BufferedImage(Math.max(1, canvasWidth), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = result.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, Math.max(1, width), Math.max(1, height), null);
+        graphics.dispose();
+        return result;
+    }
+
+    /**
+     * Find the background image in the files of a beatmap set: the
+     * "background" image, or any image with "background" or the word "bg"
+     * in the name. (Eg. "bg.jpg" or "song-bg.png", but not "bgm.png")
+     *
+     * @param files Files in the beatmap's sub-directory
+     * @return Background image (Null if not found)
+     */
+    public static File findBackground(File[] files)
+    {
+        File result = null;
+
+        for (File file : files)
+        {
+            String fileName = file.getName().toLowerCase();
+            if (!fileName.endsWith(".jpg") && !fileName.endsWith(".png")) continue;
+
+            if (fileName.equals("background.jpg") || fileName.equals("background.png")) return file;
+            if (result == null && (fileName.contains("background") || BG_WORD.matcher(fileName).find())) result = file;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the beatmap id of a beatmap set: the number before the folder
+     * name. (Eg. "398366 deadmau5 - Orange File")
+     *
+     * @param beatmapSet Beatmap's sub-directory
+     * @return Beatmap id (-1 if the folder name does not start with a number)
+     */
+    public static int parseId(File beatmapSet)
+    {
+        try
+        {
+            return Integer.parseInt(beatmapSet.getName().split(" ")[0]);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
 }
@@ -1,10 +1,9 @@
 import greenfoot.Color;
+import greenfoot.Greenfoot;
 import greenfoot.GreenfootImage;
 import greenfoot.World;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * This is the gameplay stage.
@@ -57,7 +56,7 @@ public class BeatmapWorld extends World
      */
     public BeatmapWorld(File beatmapSet, String difficulty)
     {
-        this(BeatmapReader.read(BeatmapReader.findBeatmapByDifficulty(beatmapSet, difficulty)));
+        this(BeatmapReader.read(BeatmapReader.findBeatmapByDifficulty(beatmapSet, difficulty), difficulty));
     }
 
     /**
@@ -66,11 +65,21 @@ public class BeatmapWorld extends World
      * @param beatmap Beatmap object
      */
     public BeatmapWorld(Beatmap beatmap)
+    {
+        this(new PreparedBeatmap(beatmap, null));
+    }
+
+    /**
+     * Start a game with a beatmap prepared by the BeatmapLoader.
+     *
+     * @param prepared Prepared beatmap
+     */
+    public BeatmapWorld(PreparedBeatmap prepared)
     {
         // Set resolution
         super(Constants.WIDTH, Constants.HEIGHT, 1);
 
-        this.beatmap = beatmap;
+        this.beatmap = prepared.getBeatmap();
 
         // Creates a new counter and adds it to the world
         scoreCounter = new ScoreCounter(beatmap);
@@ -84,8 +93,11 @@ public class BeatmapWorld extends World
         addObject(beatmapController = new BeatmapController(beatmap, scoreCounter), 0, 0);
         beatmapController.init();
 
+        // Open the audio device now that this chart is played, so the music starts right away.
+        beatmap.getMusic().cue();
+
         // Draw background
-        drawBackground();
+        drawBackground(prepared.getBackground());
     }
 
     /**
@@ -96,24 +108,55 @@ public class BeatmapWorld extends World
         beatmapController.start();
     }
 
+    /**
+     * Retry: restart the game in the same world, without reading the
+     * beatmap or drawing the background again.
+     */
+    public void restart()
+    {
+        for (ScoreReport report : getObjects(ScoreReport.class))
+        {
+            report.remove();
+        }
+        beatmapController.restart();
+    }
+
+    /**
+     * Playlist: Switch to the next chart. It starts right away if it's
+     * loaded, otherwise the loading screen is shown until it is.
+     *
+     * @param load Load of the next chart
+     */
+    public void playNext(BeatmapLoader.Load load)
+    {
+        // This world is left, so release its audio line and file before the next one opens its own.
+        beatmap.getMusic().close();
+
+        PreparedBeatmap prepared = load.isDone() ? load.get() : null;
+        if (prepared == null)
+        {
+            Greenfoot.setWorld(new LoadingWorld(null, load));
+            return;
+        }
+
+        BeatmapWorld world = new BeatmapWorld(prepared);
+        Greenfoot.setWorld(world);
+        world.startGame();
+    }
+
     /**
      * Draw the wallpaper and stage images and stuff.
+     *
+     * @param wallpaper Wallpaper of the beatmap at the size of the world (Null = read it)
      */
-    private void drawBackground()
+    private void drawBackground(GreenfootImage wallpaper)
     {
         // Show wallpaper
         {
-            // Get wallpaper of beatmap
-            List<String> fileNameList = Arrays.asList(beatmap.getFile().getParentFile().list());
-            String backgroundSuffix = fileNameList.contains("background.jpg") ? "jpg" : "png";
-            GreenfootImage wallpaper = new GreenfootImage("../beatmaps/" +
-                    beatmap.getFile().getParentFile().getName() + "/background." + backgroundSuffix);
-
-            // Simple proportions calculations right?
-            int origWidth = wallpaper.getWidth();
-            int origHeight = wallpaper.getHeight();
-            wallpaper.scale((int) (1.0 * origWidth / origHeight * Constants.HEIGHT), Constants.HEIGHT);
-            getBackground().drawImage(wallpaper, 0, 0);
+            // Get wallpaper of beatmap (Decoded at the size of the world, not the size of the file)
+            if (wallpaper == null) wallpaper = BeatmapReader.readBackground(beatmap.getFile().getParentFile(),
+                    Constants.WIDTH, Constants.HEIGHT);
+            if (wallpaper != null) getBackground().drawImage(wallpaper, 0, 0);
         }
 
         // Darken wallpaper with a black overlay
@@ -0,0 +1,389 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The BMS (.bms, .bme, .bml) chart format. Each file is one chart. Only
+ * charts that use at most 4 lanes of player 1 can be played, and the
+ * used lanes are mapped to the columns from left to right.
+ *
+ * BMS songs are made of key sounds instead of one music file, so the
+ * first background sound (channel 01) is used as the music, and the chart
+ * is shifted so that this sound starts at 0. Charts that only have key
+ * sounds are played without music.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+public class BmsChartFormat implements ChartFormat
+{
+    /** Player 1 lanes from left to right: scratch, keys 1 to 7 */
+    private static final int[] LANES = {0x16, 0x11, 0x12, 0x13, 0x14, 0x15, 0x18, 0x19};
+
+    /** Names of #DIFFICULTY 1 to 5 */
+    private static final String[] DIFFICULTY_NAMES = {"Beginner", "Normal", "Hyper", "Another", "Insane"};
+
+    /** OverallDifficulty of #RANK 0 to 3 (Very hard, Hard, Normal, Easy) */
+    private static final String[] RANK_OVERALL_DIFFICULTY = {"9", "8", "7", "5"};
+
+    /** BMS files are usually in Shift_JIS */
+    private static final Charset CHARSET = Charset.isSupported("MS932") ? Charset.forName("MS932") : StandardCharsets.ISO_8859_1;
+
+    @Override
+    public boolean accepts(File file)
+    {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".bms") || name.endsWith(".bme") || name.endsWith(".bml");
+    }
+
+    @Override
+    public boolean isSingleChart()
+    {
+        return true;
+    }
+
+    @Override
+    public List<String> listDifficulties(File file) throws IOException
+    {
+        return Collections.singletonList(difficultyName(readHeader(readLines(file)), file));
+    }
+
+    @Override
+    public ChartData read(File file, String difficulty, boolean headerOnly) throws IOException
+    {
+        List<String> lines = readLines(file);
+        Map<String, String> header = readHeader(lines);
+
+        // Properties (Normalized to osu! keys)
+        Map<String, String> properties = new HashMap<>();
+        putIfPresent(properties, "Title", header.get("TITLE"));
+        putIfPresent(properties, "Artist", header.get("ARTIST"));
+        putIfPresent(properties, "Tags", header.get("GENRE"));
+        putIfPresent(properties, "Background", header.get("STAGEFILE"));
+        properties.put("Version", difficultyName(header, file));
+        properties.put("Mode", "3");
+        int rank = (int) parseNumber(header.getOrDefault("RANK", "2"), 2);
+        properties.put("OverallDifficulty", RANK_OVERALL_DIFFICULTY[Math.max(0, Math.min(3, rank))]);
+
+        // Measure lengths, and all the objects by channel
+        TreeMap<Integer, Double> measureLengths = new TreeMap<>();
+        List<int[]> objects = new ArrayList<>();
+        List<String> objectValues = new ArrayList<>();
+        int lastMeasure = 0;
+
+        for (String line : lines)
+        {
+            // #mmmcc:data
+            if (line.length() < 8 || line.charAt(6) != ':' || !isDigits(line, 1, 4)) continue;
+            int measure = Integer.parseInt(line.substring(1, 4));
+            // Channels are hex, the object values are base 36.
+            int channel = parseHex(line.substring(4, 6));
+            if (channel == 0) continue;
+            String data = line.substring(7).trim();
+            lastMeasure = Math.max(lastMeasure, measure);
+
+            // Channel 02: Measure length
+            if (channel == 2)
+            {
+                measureLengths.put(measure, parseNumber(data, 1));
+                continue;
+            }
+
+            // Other channels: pairs of base 36 (Base 16 for channel 03) values evenly spread in the measure
+            int count = data.length() / 2;
+            for (int i = 0; i < count; i++)
+            {
+                String value = data.substring(i * 2, i * 2 + 2);
+                if (value.equals("00")) continue;
+                objects.add(new int[]{measure, channel, i, count, objectValues.size()});
+                objectValues.add(value);
+            }
+        }
+
+        // Sort the objects by position, since the lines can be in any order.
+        objects.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) :
+                Double.compare((double) a[2] / a[3], (double) b[2] / b[3]));
+
+        // Beat of the start of each measure
+        double[] measureBeats = new double[lastMeasure + 2];
+        for (int m = 1; m < measureBeats.length; m++)
+        {
+            measureBeats[m] = measureBeats[m - 1] + 4 * measureLengths.getOrDefault(m - 1, 1.0);
+        }
+
+        // Timing
+        BeatTiming timing = new BeatTiming(0);
+        timing.addBpm(0, parseNumber(header.getOrDefault("BPM", "130"), 130));
+        for (int[] o : objects)
+        {
+            String value = objectValues.get(o[4]);
+            double beat = beatOf(o, measureBeats, measureLengths);
+
+            // Channel 03: BPM in hex, Channel 08: BPM from #BPMxx
+            if (o[1] == 3) timing.addBpm(beat, parseHex(value));
+            else if (o[1] == 8) timing.addBpm(beat, parseNumber(header.getOrDefault("BPM" + value.toUpperCase(), "0"), 0));
+        }
+        for (int[] o : objects)
+        {
+            if (o[1] != 9) continue;
+
+            // Channel 09: Stop from #STOPxx, in 1/192 of a measure.
+            double beat = beatOf(o, measureBeats, measureLengths);
+            double beats = parseNumber(header.getOrDefault("STOP" + objectValues.get(o[4]).toUpperCase(), "0"), 0) / 48;
+            timing.addStop(beat, beats * 60000 / timing.bpmAt(beat));
+        }
+
+        // Music: the first background sound
+        double musicTime = 0;
+        String music = null;
+        for (int[] o : objects)
+        {
+            if (o[1] != 1) continue;
+            double time = timing.timeAt(beatOf(o, measureBeats, measureLengths));
+            if (music == null || time < musicTime)
+            {
+                musicTime = time;
+                music = header.get("WAV" + objectValues.get(o[4]).toUpperCase());
+            }
+        }
+        putIfPresent(properties, "AudioFilename", music);
+
+        // Find the used lanes (Long notes in channel 5x use the same lanes as 1x)
+        boolean[] used = new boolean[LANES.length];
+        for (int[] o : objects)
+        {
+            int lane = laneOf(o[1]);
+            if (lane >= 0) used[lane] = true;
+        }
+        int[] columns = new int[LANES.length];
+        int keyCount = 0;
+        for (int i = 0; i < LANES.length; i++)
+        {
+            columns[i] = used[i] ? keyCount++ : -1;
+        }
+        properties.put("CircleSize", "" + Math.max(keyCount, Constants.NUM_COLS));
+
+        // Notes
+        IntList[] notes = new IntList[Constants.NUM_COLS];
+        for (int i = 0; i < notes.length; i++)
+        {
+            notes[i] = new IntList();
+        }
+
+        if (!headerOnly && keyCount <= Constants.NUM_COLS)
+        {
+            boolean[] holding = new boolean[LANES.length];
+            for (int[] o : objects)
+            {
+                int lane = laneOf(o[1]);
+                if (lane < 0) continue;
+
+                // Long notes are a start and an end object, only the start is a note.
+                if (o[1] >= 0x51)
+                {
+                    holding[lane] = !holding[lane];
+                    if (!holding[lane]) continue;
+                }
+
+                double time = timing.timeAt(beatOf(o, measureBeats, measureLengths)) - musicTime;
+                notes[columns[lane]].add((int) Math.round(time));
+            }
+        }
+
+        // Timing points, shifted with the music
+        int[] timingTimes = new int[timing.getBpmCount()];
+        double[] beatLengths = new double[timingTimes.length];
+        boolean[] uninherited = new boolean[timingTimes.length];
+        timing.toTimingPoints(timingTimes, beatLengths);
+        Arrays.fill(uninherited, true);
+        for (int i = 0; i < timingTimes.length; i++)
+        {
+            timingTimes[i] -= (int) Math.round(musicTime);
+        }
+
+        IntBuffer[] noteTimes = new IntBuffer[notes.length];
+        for (int i = 0; i < notes.length; i++)
+        {
+            noteTimes[i] = IntBuffer.wrap(notes[i].toSortedArray());
+        }
+
+        return new ChartData(properties, noteTimes, timingTimes, beatLengths, uninherited);
+    }
+
+    /**
+     * Read the lines of a BMS file. Only the lines starting with "#" are
+     * kept, and the #RANDOM blocks always take the #IF 1 branch.
+     *
+     * @param file File
+     * @return Lines
+     * @throws IOException File read error
+     */
+    private static List<String> readLines(File file) throws IOException
+    {
+        List<String> lines = new ArrayList<>();
+        boolean active = true;
+
+        for (String line : new String(BeatmapFiles.readAllBytes(file), CHARSET).split("\n"))
+        {
+            line = line.trim();
+            if (!line.startsWith("#")) continue;
+
+            String upper = line.toUpperCase();
+            if (upper.startsWith("#IF ")) active = upper.substring(4).trim().equals("1");
+            else if (upper.startsWith("#ENDIF")) active = true;
+            else if (active && !upper.startsWith("#RANDOM") && !upper.startsWith("#ENDRANDOM")) lines.add(line);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Read the "#KEY value" header lines.
+     *
+     * @param lines Lines
+     * @return Header (Keys are upper case)
+     */
+    private static Map<String, String> readHeader(List<String> lines)
+    {
+        Map<String, String> header = new HashMap<>();
+
+        for (String line : lines)
+        {
+            int space = line.indexOf(' ');
+            if (space < 0 || line.indexOf(':') == 6) continue;
+            header.put(line.substring(1, space).toUpperCase(), line.substring(space + 1).trim());
+        }
+
+        return header;
+    }
+
+    /**
+     * Get the difficulty name of a chart: "#DIFFICULTY #PLAYLEVEL", or
+     * the file name if they are missing.
+     *
+     * @param header Header
+     * @param file File
+     * @return Difficulty name
+     */
+    private static String difficultyName(Map<String, String> header, File file)
+    {
+        int difficulty = (int) parseNumber(header.getOrDefault("DIFFICULTY", "0"), 0);
+        String level = header.get("PLAYLEVEL");
+
+        if (difficulty < 1 || difficulty > DIFFICULTY_NAMES.length)
+        {
+            String name = file.getName();
+            name = name.substring(0, name.lastIndexOf('.'));
+            return level == null ? name : name + " " + level;
+        }
+
+        return DIFFICULTY_NAMES[difficulty - 1] + (level == null ? "" : " " + level);
+    }
+
+    /**
+     * Calculate the beat of an object.
+     *
+     * @param o Object {measure, channel, index, count}
+     * @param measureBeats Beat of the start of each measure
+     * @param measureLengths Measure lengths
+     * @return Beat
+     */
+    private static double beatOf(int[] o, double[] measureBeats, Map<Integer, Double> measureLengths)
+    {
+        return measureBeats[o[0]] + 4 * measureLengths.getOrDefault(o[0], 1.0) * o[2] / o[3];
+    }
+
+    /**
+     * Get the lane index of a note channel.
+     *
+     * @param channel Channel
+     * @return Lane index in LANES (-1 = not a note channel)
+     */
+    private static int laneOf(int channel)
+    {
+        // Long note channels 5x are the same lanes as 1x
+        if (channel >= 0x51 && channel <= 0x59) channel -= 0x40;
+
+        for (int i = 0; i < LANES.length; i++)
+        {
+            if (LANES[i] == channel) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Check if a range of a string is all digits.
+     *
+     * @param s String
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return All digits or not
+     */
+    private static boolean isDigits(String s, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (!Character.isDigit(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a hex number.
+     *
+     * @param text Text
+     * @return Number (0 if the text is not a hex number)
+     */
+    private static int parseHex(String text)
+    {
+        try
+        {
+            return Integer.parseInt(text, 16);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse a number.
+     *
+     * @param text Text
+     * @param fallback Value if the text is not a number
+     * @return Number
+     */
+    private static double parseNumber(String text, double fallback)
+    {
+        try
+        {
+            return Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return fallback;
+        }
+    }
+
+    /**
+     * Put a property if the value is not empty.
+     *
+     * @param properties Properties
+     * @param key Key
+     * @param value Value
+     */
+    private static void putIfPresent(Map<String, String> properties, String key, String value)
+    {
+        if (value != null && !value.trim().isEmpty()) properties.put(key, value.trim());
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This class stores compiled charts in the cache directory, so that a
+ * chart that is played before does not need to be parsed again. The
+ * compiled file is loaded with a MappedByteBuffer, and the note times are
+ * views of the mapped file instead of copies, so they are paged in by the
+ * OS while the game reads them.
+ *
+ * Compiled files are named by the ContentHash of the chart file (and the
+ * difficulty for files with many charts), not by its path, so a chart
+ * that is copied, moved or re-uploaded in another set is only compiled
+ * once, and a changed chart never reads an outdated compiled file. The
+ * name also has the version of the format, so a new version is written to
+ * a new file instead of replacing an old one that may still be mapped (A
+ * mapped file can't be replaced on Windows).
+ *
+ * Compiled file format (big endian):
+ * - int magic, int version
+ * - long source hash
+ * - String difficulty key (Lower case difficulty for files with many charts, otherwise "")
+ * - int property count, (String key, String value) * count
+ * - int timing point count, int[] times, double[] beat lengths, byte[] uninherited
+ * - int column count, (int note count, int[] note times) * count
+ * A String is an int byte length followed by UTF-8 bytes.
+ *
+ * @author agent
+ * @since 2026-10-18 04:16
+ */
+@SuppressWarnings("WeakerAccess")
+public class ChartCache
+{
+    /** Magic number at the start of every compiled file ("BBCC") */
+    private static final int MAGIC = 0x42424343;
+
+    /** Version of the format. Increase it when the format changes. */
+    private static final int VERSION = 3;
+
+    /** Directory of the compiled charts */
+    private static final File DIRECTORY = new File(Constants.CACHE_DIRECTORY, "charts");
+
+    /**
+     * Load a chart. The compiled version is used if it is up to date,
+     * otherwise the chart is parsed and compiled again.
+     *
+     * @param file Chart file (.osu)
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    public static ChartData load(File file) throws IOException
+    {
+        return load(file, null);
+    }
+
+    /**
+     * Load a chart of any format in ChartFormats. The compiled version is
+     * used if it exists, otherwise the chart is parsed and compiled.
+     *
+     * @param file Chart file
+     * @param difficulty Difficulty name (Only needed when the file has more than one chart)
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    public static ChartData load(File file, String difficulty) throws IOException
+    {
+        return load(file, difficulty, ContentHash.hash(file));
+    }
+
+    /**
+     * Load a chart whose ContentHash is already known.
+     *
+     * @param file Chart file
+     * @param difficulty Difficulty name (Only needed when the file has more than one chart)
+     * @param hash ContentHash of the chart file
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    public static ChartData load(File file, String difficulty, long hash) throws IOException
+    {
+        ChartFormat format = ChartFormats.get(file);
+        String key = format.isSingleChart() || difficulty == null ? "" : difficulty.toLowerCase();
+        File compiled = getCompiledFile(hash, key);
+
+        // Try the compiled version.
+        if (compiled.isFile())
+        {
+            try
+            {
+                ChartData chart = readCompiled(hash, key, compiled);
+                if (chart != null) return chart;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Broken cache file, just compile it again.
+                e.printStackTrace();
+            }
+
+            // Not usable: remove it so the new one can be written. (Can fail if it's still mapped)
+            compiled.delete();
+        }
+
+        // Parse the source.
+        ChartData chart;
+        if (!(format instanceof OsuChartFormat) || BeatmapFiles.isInArchive(file))
+        {
+            chart = format.read(file, difficulty, false);
+        }
+        else if (BeatmapFiles.length(file) >= BeatmapParser.PARALLEL_THRESHOLD)
+        {
+            chart = BeatmapParser.parseParallel(file);
+        }
+        else try (InputStream in = BeatmapFiles.open(file))
+        {
+            chart = BeatmapParser.parse(in, false);
+        }
+
+        // Write the compiled version. Failing to write the cache should not stop the game.
+        try
+        {
+            writeCompiled(hash, key, compiled, chart);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+
+        return chart;
+    }
+
+    /**
+     * Get where the compiled version of a chart is, for this version of
+     * the format.
+     *
+     * @param hash ContentHash of the chart file
+     * @param key Difficulty key
+     * @return Compiled file
+     */
+    private static File getCompiledFile(long hash, String key)
+    {
+        String name = ContentHash.toHex(hash);
+        if (!key.isEmpty())
+        {
+            CRC32 crc = new CRC32();
+            crc.update(key.getBytes(StandardCharsets.UTF_8));
+            name += "-" + Long.toHexString(crc.getValue());
+        }
+        return new File(DIRECTORY, name + ".v" + VERSION + ".bbc");
+    }
+
+    /**
+     * Read a compiled chart.
+     *
+     * @param hash ContentHash of the chart file
+     * @param key Difficulty key
+     * @param compiled Compiled file
+     * @return Chart data, or null if the compiled file is outdated or not for this chart.
+     * @throws IOException File read error
+     */
+    private static ChartData readCompiled(long hash, String key, File compiled) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Check version
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+
+            // Check if it's the same chart
+            if (buf.getLong() != hash || !readString(buf).equals(key)) return null;
+
+            // Properties
+            int propertyCount = buf.getInt();
+            Map<String, String> properties = new HashMap<>();
+            for (int i = 0; i < propertyCount; i++)
+            {
+                properties.put(readString(buf), readString(buf));
+            }
+
+            // Timing points
+            int timingCount = buf.getInt();
+            int[] timingTimes = new int[timingCount];
+            double[] timingBeatLengths = new double[timingCount];
+            boolean[] timingUninherited = new boolean[timingCount];
+            buf.asIntBuffer().get(timingTimes);
+            buf.position(buf.position() + timingCount * Integer.BYTES);
+            buf.asDoubleBuffer().get(timingBeatLengths);
+            buf.position(buf.position() + timingCount * Double.BYTES);
+            for (int i = 0; i < timingCount; i++)
+            {
+                timingUninherited[i] = buf.get() != 0;
+            }
+
+            // Notes (Mapped, not copied)
+            IntBuffer[] notes = new IntBuffer[buf.getInt()];
+            for (int col = 0; col < notes.length; col++)
+            {
+                int count = buf.getInt();
+                notes[col] = buf.slice().asIntBuffer();
+                notes[col].limit(count);
+                buf.position(buf.position() + count * Integer.BYTES);
+            }
+
+            return new ChartData(properties, notes, timingTimes, timingBeatLengths, timingUninherited);
+        }
+    }
+
+    /**
+     * Write a compiled chart. It is written to a temporary file first, so
+     * that a half written file will never be read. An existing compiled
+     * file is never replaced, since it may be mapped.
+     *
+     * @param hash ContentHash of the chart file
+     * @param key Difficulty key
+     * @param compiled Compiled file
+     * @param chart Chart data
+     * @throws IOException File write error
+     */
+    private static void writeCompiled(long hash, String key, File compiled, ChartData chart) throws IOException
+    {
+        // Encode strings first to know the size.
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[][] keys = new byte[chart.getProperties().size()][];
+        byte[][] values = new byte[keys.length][];
+        int size = 4 * 2 + 8 + 4 + keyBytes.length + 4;
+
+        int i = 0;
+        for (Map.Entry<String, String> entry : chart.getProperties().entrySet())
+        {
+            keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            values[i] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            size += 8 + keys[i].length + values[i].length;
+            i++;
+        }
+
+        int timingCount = chart.getTimingTimes().length;
+        size += 4 + timingCount * (4 + 8 + 1);
+        size += 4;
+        for (IntBuffer column : chart.getNotes())
+        {
+            size += 4 + column.limit() * 4;
+        }
+
+        // Write everything into a buffer
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION);
+        buf.putLong(hash);
+        buf.putInt(keyBytes.length).put(keyBytes);
+
+        buf.putInt(keys.length);
+        for (i = 0; i < keys.length; i++)
+        {
+            buf.putInt(keys[i].length).put(keys[i]);
+            buf.putInt(values[i].length).put(values[i]);
+        }
+
+        buf.putInt(timingCount);
+        for (int time : chart.getTimingTimes()) buf.putInt(time);
+        for (double beatLength : chart.getTimingBeatLengths()) buf.putDouble(beatLength);
+        for (boolean uninherited : chart.getTimingUninherited()) buf.put((byte) (uninherited ? 1 : 0));
+
+        buf.putInt(chart.getNotes().length);
+        for (IntBuffer column : chart.getNotes())
+        {
+            buf.putInt(column.limit());
+            for (int n = 0; n < column.limit(); n++) buf.putInt(column.get(n));
+        }
+        buf.flip();
+
+        // Write buffer to a temporary file and move it to the compiled file.
+        if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) throw new IOException("Error: Failed to create " + DIRECTORY);
+        File temp = File.createTempFile("chart", ".tmp", DIRECTORY);
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE))
+            {
+                while (buf.hasRemaining()) channel.write(buf);
+            }
+            Files.move(temp.toPath(), compiled.toPath());
+        }
+        catch (FileAlreadyExistsException e)
+        {
+            // Another thread compiled it first.
+        }
+        finally
+        {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Read a string from a buffer.
+     *
+     * @param buf Buffer
+     * @return String
+     */
+    private static String readString(ByteBuffer buf)
+    {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
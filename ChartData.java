@@ -0,0 +1,113 @@
+import java.nio.IntBuffer;
+import java.util.Map;
+
+/**
+ * ChartData is the parsed content of a chart file: the header properties,
+ * the timing points and the note times of each column. The note times are
+ * stored in IntBuffers since there could be a lot of them: a parsed chart
+ * wraps int arrays, and a compiled chart from ChartCache uses views of the
+ * mapped file, so the notes are only paged in when they are read.
+ *
+ * @author agent
+ * @since 2026-10-18 04:16
+ */
+@SuppressWarnings("WeakerAccess")
+public class ChartData
+{
+    /** Header properties (Eg. "Title" -> "Orange File") */
+    private final Map<String, String> properties;
+
+    /**
+     * Note times of each column in ms, sorted.
+     * Eg. First note in first column: notes[0].get(0)
+     */
+    private final IntBuffer[] notes;
+
+    /** Start time of each timing point in ms. */
+    private final int[] timingTimes;
+
+    /** Beat length of each timing point. (Negative = inherited SV) */
+    private final double[] timingBeatLengths;
+
+    /** Is each timing point uninherited (a BPM change) or not. */
+    private final boolean[] timingUninherited;
+
+    /**
+     * Construct a chart data object.
+     *
+     * @param properties Header properties
+     * @param notes Sorted note times of each column
+     * @param timingTimes Start time of each timing point
+     * @param timingBeatLengths Beat length of each timing point
+     * @param timingUninherited Is each timing point uninherited
+     */
+    public ChartData(Map<String, String> properties, IntBuffer[] notes,
+                     int[] timingTimes, double[] timingBeatLengths, boolean[] timingUninherited)
+    {
+        this.properties = properties;
+        this.notes = notes;
+        this.timingTimes = timingTimes;
+        this.timingBeatLengths = timingBeatLengths;
+        this.timingUninherited = timingUninherited;
+    }
+
+    /**
+     * Count the total number of notes.
+     *
+     * @return Total number of notes.
+     */
+    public int countNotes()
+    {
+        int total = 0;
+        for (IntBuffer column : notes)
+        {
+            total += column.limit();
+        }
+        return total;
+    }
+
+    /**
+     * Find the time of the last note.
+     *
+     * @return Time of the last note in ms (0 if there are no notes)
+     */
+    public int getLastNoteTime()
+    {
+        int last = 0;
+        for (IntBuffer column : notes)
+        {
+            int count = column.limit();
+            if (count > 0) last = Math.max(last, column.get(count - 1));
+        }
+        return last;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public Map<String, String> getProperties()
+    {
+        return properties;
+    }
+
+    public IntBuffer[] getNotes()
+    {
+        return notes;
+    }
+
+    public int[] getTimingTimes()
+    {
+        return timingTimes;
+    }
+
+    public double[] getTimingBeatLengths()
+    {
+        return timingBeatLengths;
+    }
+
+    public boolean[] getTimingUninherited()
+    {
+        return timingUninherited;
+    }
+}
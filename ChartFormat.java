@@ -0,0 +1,54 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A chart format reads one kind of chart file into ChartData, the common
+ * representation that the game plays. The header properties are
+ * normalized to the osu! keys (Eg. "Title", "AudioFilename",
+ * "CircleSize" for the key count), so the rest of the game does not need
+ * to know which format a chart came from.
+ *
+ * The formats are registered in ChartFormats.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+public interface ChartFormat
+{
+    /**
+     * Check if a file is in this format.
+     *
+     * @param file File
+     * @return Is this format or not
+     */
+    boolean accepts(File file);
+
+    /**
+     * Does every file of this format only contain one chart? If not, the
+     * difficulty name is needed to find a chart in the file.
+     *
+     * @return Single chart or not
+     */
+    boolean isSingleChart();
+
+    /**
+     * List the difficulty names of the playable charts in a file.
+     *
+     * @param file Chart file
+     * @return Difficulty names
+     * @throws IOException File read error
+     */
+    List<String> listDifficulties(File file) throws IOException;
+
+    /**
+     * Read a chart from a file.
+     *
+     * @param file Chart file
+     * @param difficulty Difficulty name (Null = the first chart)
+     * @param headerOnly Only read the header properties or not.
+     * @return Chart data
+     * @throws IOException File read error
+     */
+    ChartData read(File file, String difficulty, boolean headerOnly) throws IOException;
+}
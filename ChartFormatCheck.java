@@ -0,0 +1,72 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A check of the chart formats that runs outside of the game:
+ *   java ChartFormatCheck
+ *
+ * It reads known charts and throws an IllegalStateException if they are
+ * not read as expected.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+public class ChartFormatCheck
+{
+    /**
+     * Run the checks.
+     *
+     * @param args Not used
+     * @throws IOException Temporary file error
+     */
+    public static void main(String[] args) throws IOException
+    {
+        checkBms();
+    }
+
+    /**
+     * Check that a known BMS chart is read with the expected note count in
+     * each column: the scratch and keys 1, 2 and 4 are used, and the long
+     * notes (Channels 51 and 54) are one note each.
+     *
+     * @throws IOException Temporary file error
+     */
+    public static void checkBms() throws IOException
+    {
+        String chart = String.join("\n",
+                "#BPM 120",
+                "#PLAYLEVEL 1",
+                "#00116:00010000",
+                "#00111:01010101",
+                "#00112:0001",
+                "#00114:01000100",
+                "#00151:01000001",
+                "#00254:0101");
+        int[] expected = {1, 5, 1, 3};
+
+        File file = File.createTempFile("check", ".bms");
+        try
+        {
+            Files.write(file.toPath(), chart.getBytes(StandardCharsets.US_ASCII));
+            ChartData data = new BmsChartFormat().read(file, null, false);
+
+            int[] counts = new int[data.getNotes().length];
+            for (int i = 0; i < counts.length; i++)
+            {
+                counts[i] = data.getNotes()[i].limit();
+            }
+            if (!Arrays.equals(counts, expected))
+            {
+                throw new IllegalStateException("Error: BMS notes per column are " + Arrays.toString(counts) +
+                        ", expected " + Arrays.toString(expected));
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
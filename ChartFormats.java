@@ -0,0 +1,59 @@
+import java.io.File;
+
+/**
+ * The registry of the supported chart formats.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+@SuppressWarnings("WeakerAccess")
+public class ChartFormats
+{
+    /** All supported formats */
+    private static final ChartFormat[] FORMATS =
+    {
+            new OsuChartFormat(),
+            new StepManiaChartFormat(),
+            new BmsChartFormat()
+    };
+
+    /**
+     * Find the format of a chart file.
+     *
+     * @param file Chart file
+     * @return Format (Null if it's not a supported chart)
+     */
+    public static ChartFormat find(File file)
+    {
+        for (ChartFormat format : FORMATS)
+        {
+            if (format.accepts(file)) return format;
+        }
+        return null;
+    }
+
+    /**
+     * Check if a file is a supported chart.
+     *
+     * @param file File
+     * @return Is chart or not
+     */
+    public static boolean isChart(File file)
+    {
+        return find(file) != null;
+    }
+
+    /**
+     * Find the format of a chart file, or throw an exception if it's not
+     * supported.
+     *
+     * @param file Chart file
+     * @return Format
+     */
+    public static ChartFormat get(File file)
+    {
+        ChartFormat format = find(file);
+        if (format == null) throw new RuntimeException("Error: " + file.getName() + " is not a supported chart.");
+        return format;
+    }
+}
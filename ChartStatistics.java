@@ -0,0 +1,338 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+/**
+ * Note statistics of a chart: how dense it is over time, and how many
+ * chords, jacks, streams and breaks it has. They are computed in one pass
+ * over the note times when the chart is indexed, and stored in the
+ * library index with the metadata, so the song select can show them
+ * without reading the chart again.
+ *
+ * Definitions:
+ * - Chord: two or more notes at the same time
+ * - Jack: JACK_MIN_NOTES or more notes in a row in one column, each less
+ *   than JACK_GAP ms after the last one
+ * - Stream: STREAM_MIN_NOTES or more single notes in a row (Any column),
+ *   each less than STREAM_GAP ms after the last one
+ * - Break: BREAK_GAP ms or more without notes
+ * - Drain length: from the first note to the last note, without breaks
+ *
+ * @author agent
+ * @since 2026-10-18 04:41
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ChartStatistics
+{
+    /** Number of points in the density curve */
+    public static final int DENSITY_POINTS = 64;
+
+    /** Max gap between the notes of a jack in ms */
+    private static final int JACK_GAP = 200;
+
+    /** Min notes in a jack */
+    private static final int JACK_MIN_NOTES = 3;
+
+    /** Max gap between the notes of a stream in ms */
+    private static final int STREAM_GAP = 150;
+
+    /** Min notes in a stream */
+    private static final int STREAM_MIN_NOTES = 8;
+
+    /** Min gap of a break in ms */
+    private static final int BREAK_GAP = 5000;
+
+    /** Length of the window of the peak density in ms */
+    private static final int PEAK_WINDOW = 1000;
+
+    /**
+     * Notes per second over the chart, from the first note to the last
+     * note, relative to the densest point (0 to 255).
+     */
+    private final byte[] density;
+
+    /** Most notes in any 1 second */
+    private final int peakDensity;
+
+    /** Number of chords */
+    private final int chordCount;
+
+    /** Number of jack segments */
+    private final int jackCount;
+
+    /** Number of stream segments */
+    private final int streamCount;
+
+    /** Notes in the longest stream */
+    private final int longestStream;
+
+    /** Drain length in ms */
+    private final int drainLength;
+
+    /** Start and end times of each break: [start0, end0, start1, end1, ...] */
+    private final int[] breaks;
+
+    /**
+     * Construct a statistics object.
+     *
+     * @param density Density curve
+     * @param peakDensity Most notes in any second
+     * @param chordCount Number of chords
+     * @param jackCount Number of jack segments
+     * @param streamCount Number of stream segments
+     * @param longestStream Notes in the longest stream
+     * @param drainLength Drain length in ms
+     * @param breaks Start and end times of each break
+     */
+    public ChartStatistics(byte[] density, int peakDensity, int chordCount, int jackCount, int streamCount,
+                           int longestStream, int drainLength, int[] breaks)
+    {
+        this.density = density;
+        this.peakDensity = peakDensity;
+        this.chordCount = chordCount;
+        this.jackCount = jackCount;
+        this.streamCount = streamCount;
+        this.longestStream = longestStream;
+        this.drainLength = drainLength;
+        this.breaks = breaks;
+    }
+
+    /**
+     * Compute the statistics of a chart in one pass over its notes, in
+     * time order.
+     *
+     * @param chart Chart data
+     * @return Statistics
+     */
+    public static ChartStatistics compute(ChartData chart)
+    {
+        IntBuffer[] columns = chart.getNotes();
+
+        // The first and last notes decide the density points.
+        int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+        for (IntBuffer column : columns)
+        {
+            if (column.limit() == 0) continue;
+            first = Math.min(first, column.get(0));
+            last = Math.max(last, column.get(column.limit() - 1));
+        }
+        if (first > last) return new ChartStatistics(new byte[DENSITY_POINTS], 0, 0, 0, 0, 0, 0, new int[0]);
+
+        double pointLength = Math.max(1, last - first + 1) / (double) DENSITY_POINTS;
+        int[] pointCounts = new int[DENSITY_POINTS];
+
+        // Notes in the last second, for the peak density
+        int[] window = new int[64];
+        int windowStart = 0, windowSize = 0, peakDensity = 0;
+
+        int[] cursors = new int[columns.length];
+        int[] lastInColumn = new int[columns.length];
+        int[] jackLength = new int[columns.length];
+        IntList breaks = new IntList();
+        int chordCount = 0, jackCount = 0, streamCount = 0, longestStream = 0;
+        int streamLength = 0, breakTime = 0;
+        int previousTime = Integer.MIN_VALUE, chordSize = 0;
+
+        while (true)
+        {
+            // Next note of all the columns
+            int column = -1;
+            int time = Integer.MAX_VALUE;
+            for (int col = 0; col < columns.length; col++)
+            {
+                if (cursors[col] < columns[col].limit() && columns[col].get(cursors[col]) < time)
+                {
+                    column = col;
+                    time = columns[col].get(cursors[col]);
+                }
+            }
+
+            // A new time (or the end) closes the chord and the stream at the last time.
+            if (time != previousTime && previousTime != Integer.MIN_VALUE)
+            {
+                if (chordSize >= 2) chordCount++;
+
+                boolean single = chordSize == 1;
+                boolean continues = single && column >= 0 && time - previousTime < STREAM_GAP;
+                if (single) streamLength++;
+                if (!continues)
+                {
+                    if (streamLength >= STREAM_MIN_NOTES)
+                    {
+                        streamCount++;
+                        longestStream = Math.max(longestStream, streamLength);
+                    }
+                    streamLength = 0;
+                }
+
+                // Break
+                if (column >= 0 && time - previousTime >= BREAK_GAP)
+                {
+                    breaks.add(previousTime);
+                    breaks.add(time);
+                    breakTime += time - previousTime;
+                }
+                chordSize = 0;
+            }
+            if (column < 0) break;
+            cursors[column]++;
+            chordSize++;
+            previousTime = time;
+
+            // Density
+            pointCounts[Math.min(DENSITY_POINTS - 1, (int) ((time - first) / pointLength))]++;
+
+            if (windowSize == window.length)
+            {
+                int[] bigger = new int[window.length * 2];
+                for (int i = 0; i < windowSize; i++) bigger[i] = window[(windowStart + i) % window.length];
+                window = bigger;
+                windowStart = 0;
+            }
+            window[(windowStart + windowSize++) % window.length] = time;
+            while (window[windowStart] <= time - PEAK_WINDOW)
+            {
+                windowStart = (windowStart + 1) % window.length;
+                windowSize--;
+            }
+            peakDensity = Math.max(peakDensity, windowSize);
+
+            // Jacks
+            if (jackLength[column] > 0 && time - lastInColumn[column] < JACK_GAP) jackLength[column]++;
+            else
+            {
+                if (jackLength[column] >= JACK_MIN_NOTES) jackCount++;
+                jackLength[column] = 1;
+            }
+            lastInColumn[column] = time;
+        }
+        for (int length : jackLength)
+        {
+            if (length >= JACK_MIN_NOTES) jackCount++;
+        }
+
+        // Density curve relative to the densest point
+        int maxCount = 1;
+        for (int count : pointCounts) maxCount = Math.max(maxCount, count);
+        byte[] density = new byte[DENSITY_POINTS];
+        for (int i = 0; i < DENSITY_POINTS; i++)
+        {
+            density[i] = (byte) Math.round(pointCounts[i] * 255.0 / maxCount);
+        }
+
+        return new ChartStatistics(density, peakDensity, chordCount, jackCount, streamCount, longestStream,
+                last - first - breakTime, breaks.toArray());
+    }
+
+    /**
+     * Read statistics written by write().
+     *
+     * @param in Input
+     * @return Statistics
+     * @throws IOException Read error
+     */
+    public static ChartStatistics read(DataInputStream in) throws IOException
+    {
+        byte[] density = new byte[DENSITY_POINTS];
+        in.readFully(density);
+        int peakDensity = in.readInt();
+        int chordCount = in.readInt();
+        int jackCount = in.readInt();
+        int streamCount = in.readInt();
+        int longestStream = in.readInt();
+        int drainLength = in.readInt();
+
+        int[] breaks = new int[in.readInt() * 2];
+        for (int i = 0; i < breaks.length; i++)
+        {
+            breaks[i] = in.readInt();
+        }
+
+        return new ChartStatistics(density, peakDensity, chordCount, jackCount, streamCount, longestStream,
+                drainLength, breaks);
+    }
+
+    /**
+     * Write the statistics.
+     *
+     * @param out Output
+     * @throws IOException Write error
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        out.write(density);
+        out.writeInt(peakDensity);
+        out.writeInt(chordCount);
+        out.writeInt(jackCount);
+        out.writeInt(streamCount);
+        out.writeInt(longestStream);
+        out.writeInt(drainLength);
+
+        out.writeInt(breaks.length / 2);
+        for (int time : breaks)
+        {
+            out.writeInt(time);
+        }
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    /**
+     * Get the density at a point of the curve.
+     *
+     * @param point Point (0 to DENSITY_POINTS - 1)
+     * @return Density relative to the densest point (0 to 1)
+     */
+    public double getDensity(int point)
+    {
+        return (density[point] & 0xFF) / 255.0;
+    }
+
+    public int getPeakDensity()
+    {
+        return peakDensity;
+    }
+
+    public int getChordCount()
+    {
+        return chordCount;
+    }
+
+    public int getJackCount()
+    {
+        return jackCount;
+    }
+
+    public int getStreamCount()
+    {
+        return streamCount;
+    }
+
+    public int getLongestStream()
+    {
+        return longestStream;
+    }
+
+    public int getDrainLength()
+    {
+        return drainLength;
+    }
+
+    public int getBreakCount()
+    {
+        return breaks.length / 2;
+    }
+
+    public int getBreakStart(int index)
+    {
+        return breaks[index * 2];
+    }
+
+    public int getBreakEnd(int index)
+    {
+        return breaks[index * 2 + 1];
+    }
+}
@@ -87,9 +87,21 @@ public class Constants
     /** Keys (in 4 columns) */
     public static final String[] KEYS = {"D", "G", "J", "L"};
 
+    /** Playlist: Load the next chart this many ms before the last note */
+    public static final int PLAYLIST_PRELOAD_MS = 10000;
+
+    /** Key to retry the beatmap */
+    public static final String RETRY_KEY = "backspace";
+
     /** Directory to the beatmaps' sub-directories */
     public static final File BEATMAP_DIRECTORY = new File("./beatmaps/");
 
+    /** Directory to store the compiled charts and other caches */
+    public static final File CACHE_DIRECTORY = new File("./cache/");
+
+    /** Directory to drop .osz archives in to import them */
+    public static final File IMPORT_DIRECTORY = new File("./import/");
+
     /** Debug or not */
     public static final boolean DEBUG_MODE = false;
 }
@@ -0,0 +1,151 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class calculates a fast 64-bit hash (xxHash64) of the contents of
+ * beatmap files. Files on the disk are memory mapped and read 8 bytes at a
+ * time, so hashing even an audio file costs about as much as reading it.
+ * Files in an archive are read into memory first.
+ *
+ * The hash identifies a file by its contents, not its path, so the same
+ * chart, song or background in two beatmap sets (Eg. re-uploads of the
+ * same song) has the same hash, and the caches keyed by it are shared.
+ * It is not cryptographic, but a collision is very unlikely for the size
+ * of a library.
+ *
+ * @author agent
+ * @since 2026-10-18 04:38
+ */
+@SuppressWarnings("WeakerAccess")
+public class ContentHash
+{
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    /** Files larger than this are mapped in several parts */
+    private static final long MAP_SIZE = 1 << 30;
+
+    /**
+     * Hash the contents of a file.
+     *
+     * @param file File on the disk or in an archive
+     * @return Hash
+     * @throws IOException File read error
+     */
+    public static long hash(File file) throws IOException
+    {
+        if (BeatmapFiles.isInArchive(file)) return hash(ByteBuffer.wrap(BeatmapFiles.readAllBytes(file)));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size <= MAP_SIZE) return hash(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+
+            // Very large files: hash the parts, then hash the part hashes.
+            ByteBuffer parts = ByteBuffer.allocate((int) ((size + MAP_SIZE - 1) / MAP_SIZE) * Long.BYTES);
+            for (long position = 0; position < size; position += MAP_SIZE)
+            {
+                parts.putLong(hash(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position))));
+            }
+            parts.flip();
+            return hash(parts);
+        }
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer. The position of the buffer is
+     * not changed.
+     *
+     * @param buffer Bytes
+     * @return Hash
+     */
+    public static long hash(ByteBuffer buffer)
+    {
+        ByteBuffer buf = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = buf.remaining();
+        long hash;
+
+        // Stripes of 32 bytes, in 4 lanes
+        if (length >= 32)
+        {
+            long v1 = PRIME_1 + PRIME_2;
+            long v2 = PRIME_2;
+            long v3 = 0;
+            long v4 = -PRIME_1;
+
+            while (buf.remaining() >= 32)
+            {
+                v1 = round(v1, buf.getLong());
+                v2 = round(v2, buf.getLong());
+                v3 = round(v3, buf.getLong());
+                v4 = round(v4, buf.getLong());
+            }
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        }
+        else hash = PRIME_5;
+
+        hash += length;
+
+        // The rest
+        while (buf.remaining() >= 8)
+        {
+            hash ^= round(0, buf.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (buf.remaining() >= 4)
+        {
+            hash ^= (buf.getInt() & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+        }
+        while (buf.hasRemaining())
+        {
+            hash ^= (buf.get() & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+
+        // Avalanche
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Format a hash as a file name.
+     *
+     * @param hash Hash
+     * @return 16 hex digits
+     */
+    public static String toHex(long hash)
+    {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static long round(long acc, long input)
+    {
+        acc += input * PRIME_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME_1;
+    }
+
+    private static long mergeRound(long acc, long value)
+    {
+        acc ^= round(0, value);
+        return acc * PRIME_1 + PRIME_4;
+    }
+}
@@ -0,0 +1,345 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class rates the difficulty of charts with a mania strain model,
+ * instead of trusting the number that the mapper put in the difficulty
+ * name. It works on the compiled note times, so rating a chart is one
+ * pass over its notes.
+ *
+ * Strain model (Same idea as osu!mania's star rating): every note adds
+ * strain to its column and to the whole chart, and the strain decays
+ * exponentially with time, so fast streams in one column (jacks) and
+ * dense chords both build up strain. The peak strain of every 400ms
+ * section is taken, and the rating is the weighted sum of the peaks from
+ * the hardest to the easiest (Each one weighted 0.9 times the last), so a
+ * long hard section is harder than a short one.
+ *
+ * The charts are rated on a background pool, and the ratings are cached
+ * by the ContentHash of the chart file and the difficulty name in the
+ * cache directory, so each chart is only rated once, even if it's in
+ * several sets.
+ *
+ * Cache file format (DataOutputStream):
+ * - int magic, int version, int count
+ * - (long chart hash, UTF difficulty key, double rating) * count
+ *
+ * @author agent
+ * @since 2026-10-18 04:40
+ */
+@SuppressWarnings("WeakerAccess")
+public class DifficultyCalculator
+{
+    /** Magic number at the start of the cache file ("BBDC") */
+    private static final int MAGIC = 0x42424443;
+
+    /** Version of the calculator. Increase it when the ratings change. */
+    private static final int VERSION = 1;
+
+    /** Cache file */
+    private static final File FILE = new File(Constants.CACHE_DIRECTORY, "difficulty.dat");
+
+    /** How much of the column strain is left after a second (Log, so decay = exp(seconds * log)) */
+    private static final double INDIVIDUAL_DECAY_LOG = Math.log(0.125);
+
+    /** How much of the overall strain is left after a second (Log) */
+    private static final double OVERALL_DECAY_LOG = Math.log(0.30);
+
+    /** Strain added to the column of a note */
+    private static final double INDIVIDUAL_STRAIN = 2.0;
+
+    /** Strain added to the whole chart by a note */
+    private static final double OVERALL_STRAIN = 1.0;
+
+    /** Length of a strain section in ms */
+    private static final int SECTION_LENGTH = 400;
+
+    /** Weight of each section peak compared to the one before it */
+    private static final double DECAY_WEIGHT = 0.9;
+
+    /** Scale the weighted strain to a star rating */
+    private static final double STAR_SCALING = 0.018;
+
+    /** Rating threads (Leave a core for the game) */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable ->
+    {
+        Thread thread = new Thread(runnable, "Difficulty calculator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /** Cached ratings by chart key (See getKey()) */
+    private static final Map<String, Double> RATINGS = new ConcurrentHashMap<>(read());
+
+    /** Keys of the charts that are being rated */
+    private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+
+    /** Keys of the charts that can't be rated (Not tried again until they change, since the key has the hash) */
+    private static final Set<String> FAILED = ConcurrentHashMap.newKeySet();
+
+    /** How many charts are waiting to be rated */
+    private static final AtomicInteger OUTSTANDING = new AtomicInteger();
+
+    /** Increased every time a batch of ratings is done */
+    private static volatile int generation = 0;
+
+    /**
+     * Calculate the star rating of a chart.
+     *
+     * @param chart Chart data
+     * @return Star rating (0 if there are no notes)
+     */
+    public static double calculate(ChartData chart)
+    {
+        IntBuffer[] columns = chart.getNotes();
+        int[] cursors = new int[columns.length];
+        double[] individualStrains = new double[columns.length];
+        double overallStrain = 1;
+
+        double[] peaks = new double[16];
+        int peakCount = 0;
+        double sectionPeak = 0;
+        int sectionEnd = -1;
+        int previousTime = 0;
+        int previousColumn = -1;
+
+        while (true)
+        {
+            // Next note of all the columns
+            int column = -1;
+            int time = Integer.MAX_VALUE;
+            for (int col = 0; col < columns.length; col++)
+            {
+                if (cursors[col] < columns[col].limit() && columns[col].get(cursors[col]) < time)
+                {
+                    column = col;
+                    time = columns[col].get(cursors[col]);
+                }
+            }
+            if (column < 0) break;
+            cursors[column]++;
+
+            if (previousColumn < 0)
+            {
+                // The first note only starts the first section.
+                previousTime = time;
+                previousColumn = column;
+                sectionEnd = (time / SECTION_LENGTH + 1) * SECTION_LENGTH;
+                continue;
+            }
+
+            // Close the sections before this note. The peak of a new section
+            // starts at the strain of the last note, decayed to the start.
+            while (time > sectionEnd)
+            {
+                if (peakCount == peaks.length) peaks = Arrays.copyOf(peaks, peakCount * 2);
+                peaks[peakCount++] = sectionPeak;
+
+                double seconds = (sectionEnd - previousTime) / 1000.0;
+                sectionPeak = individualStrains[previousColumn] * Math.exp(seconds * INDIVIDUAL_DECAY_LOG) +
+                        overallStrain * Math.exp(seconds * OVERALL_DECAY_LOG);
+                sectionEnd += SECTION_LENGTH;
+            }
+
+            // Decay and add the strain of this note.
+            double seconds = (time - previousTime) / 1000.0;
+            double individualDecay = Math.exp(seconds * INDIVIDUAL_DECAY_LOG);
+            for (int col = 0; col < columns.length; col++)
+            {
+                individualStrains[col] *= individualDecay;
+            }
+            individualStrains[column] += INDIVIDUAL_STRAIN;
+            overallStrain = overallStrain * Math.exp(seconds * OVERALL_DECAY_LOG) + OVERALL_STRAIN;
+            previousTime = time;
+            previousColumn = column;
+
+            sectionPeak = Math.max(sectionPeak, individualStrains[column] + overallStrain);
+        }
+        if (previousColumn < 0) return 0;
+
+        // Weighted sum of the peaks, from the hardest section
+        if (peakCount == peaks.length) peaks = Arrays.copyOf(peaks, peakCount + 1);
+        peaks[peakCount++] = sectionPeak;
+        Arrays.sort(peaks, 0, peakCount);
+
+        double difficulty = 0;
+        double weight = 1;
+        for (int i = peakCount - 1; i >= 0; i--)
+        {
+            difficulty += peaks[i] * weight;
+            weight *= DECAY_WEIGHT;
+        }
+        return difficulty * STAR_SCALING;
+    }
+
+    /**
+     * Get the cached star rating of a chart.
+     *
+     * @param chart Library chart
+     * @return Star rating, or -1 if it's not rated yet.
+     */
+    public static double getRating(LibraryChart chart)
+    {
+        return RATINGS.getOrDefault(getKey(chart), -1.0);
+    }
+
+    /**
+     * Rate the charts of the sets that are not rated yet, in the
+     * background. The generation is increased and the cache file is saved
+     * when all of them are done.
+     *
+     * @param sets Beatmap sets
+     */
+    public static void rateAll(Collection<LibrarySet> sets)
+    {
+        for (LibrarySet set : sets)
+        {
+            for (LibraryChart chart : set.getCharts())
+            {
+                String key = getKey(chart);
+                if (RATINGS.containsKey(key) || FAILED.contains(key) || !PENDING.add(key)) continue;
+
+                OUTSTANDING.incrementAndGet();
+                POOL.submit(() -> rate(chart, key));
+            }
+        }
+    }
+
+    /**
+     * Rate a chart. (Runs on the pool)
+     *
+     * @param chart Library chart
+     * @param key Chart key
+     */
+    private static void rate(LibraryChart chart, String key)
+    {
+        try
+        {
+            RATINGS.put(key, calculate(ChartCache.load(chart.getFile(), chart.getDifficulty(), chart.getHash())));
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Deleted or broken charts stay unrated.
+            e.printStackTrace();
+            FAILED.add(key);
+        }
+        finally
+        {
+            PENDING.remove(key);
+            if (OUTSTANDING.decrementAndGet() == 0)
+            {
+                try
+                {
+                    save();
+                }
+                catch (IOException e)
+                {
+                    // They are rated again next time.
+                    e.printStackTrace();
+                }
+                generation++;
+            }
+        }
+    }
+
+    /**
+     * Get the cache key of a chart: its hash and its difficulty name.
+     *
+     * @param chart Library chart
+     * @return Key
+     */
+    private static String getKey(LibraryChart chart)
+    {
+        return ContentHash.toHex(chart.getHash()) + "#" + chart.getDifficulty().toLowerCase();
+    }
+
+    /**
+     * Read the cache file.
+     *
+     * @return Ratings by chart key (Empty if there's no cache or it's broken)
+     */
+    private static Map<String, Double> read()
+    {
+        Map<String, Double> ratings = new HashMap<>();
+        if (!FILE.isFile()) return ratings;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FILE))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return ratings;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                String key = ContentHash.toHex(in.readLong()) + "#" + in.readUTF();
+                ratings.put(key, in.readDouble());
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Broken cache, just rate them again.
+            e.printStackTrace();
+            ratings.clear();
+        }
+
+        return ratings;
+    }
+
+    /**
+     * Write the cache file. It is written to a temporary file first, so
+     * that a half written cache will never be read.
+     *
+     * @throws IOException File write error
+     */
+    private static synchronized void save() throws IOException
+    {
+        if (!Constants.CACHE_DIRECTORY.isDirectory() && !Constants.CACHE_DIRECTORY.mkdirs())
+            throw new IOException("Error: Failed to create " + Constants.CACHE_DIRECTORY);
+
+        Map<String, Double> ratings = new HashMap<>(RATINGS);
+        File temp = File.createTempFile("difficulty", ".tmp", Constants.CACHE_DIRECTORY);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ratings.size());
+
+            for (Map.Entry<String, Double> entry : ratings.entrySet())
+            {
+                String[] key = entry.getKey().split("#", 2);
+                out.writeLong(Long.parseUnsignedLong(key[0], 16));
+                out.writeUTF(key[1]);
+                out.writeDouble(entry.getValue());
+            }
+        }
+        Files.move(temp.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public static int getGeneration()
+    {
+        return generation;
+    }
+}
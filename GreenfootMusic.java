@@ -0,0 +1,57 @@
+import greenfoot.sound.Sound;
+import greenfoot.sound.SoundFactory;
+
+/**
+ * Music played by Greenfoot's sound system. This is only used when the
+ * audio can't be streamed (Eg. there's no audio device that can play its
+ * format), since Greenfoot loads the whole song into memory.
+ *
+ * @author agent
+ * @since 2026-10-18 04:55
+ */
+@SuppressWarnings("WeakerAccess")
+public class GreenfootMusic implements Music
+{
+    /** Greenfoot sound */
+    private final Sound sound;
+
+    /**
+     * Create music from a URL.
+     *
+     * @param url Audio URL
+     */
+    public GreenfootMusic(String url)
+    {
+        sound = SoundFactory.getInstance().createSound(url, false);
+    }
+
+    @Override
+    public void cue()
+    {
+        // Greenfoot opens the sound when it's played.
+    }
+
+    @Override
+    public void play()
+    {
+        sound.play();
+    }
+
+    @Override
+    public void stop()
+    {
+        sound.stop();
+    }
+
+    @Override
+    public void close()
+    {
+        sound.close();
+    }
+
+    @Override
+    public boolean isPlaying()
+    {
+        return sound.isPlaying();
+    }
+}
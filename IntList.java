@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints. This is used instead of an
+ * ArrayList&lt;Integer&gt; while parsing charts, because boxing every
+ * note time would be too memory consuming.
+ *
+ * @author agent
+ * @since 2026-10-18 04:16
+ */
+@SuppressWarnings("WeakerAccess")
+public class IntList
+{
+    /** The backing array. Only the first size elements are used. */
+    private int[] data;
+
+    /** How many elements are in the list */
+    private int size;
+
+    /**
+     * Construct an empty int list.
+     */
+    public IntList()
+    {
+        this(16);
+    }
+
+    /**
+     * Construct an empty int list with an initial capacity.
+     *
+     * @param capacity Initial capacity.
+     */
+    public IntList(int capacity)
+    {
+        data = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a value to the end of the list.
+     *
+     * @param value Value
+     */
+    public void add(int value)
+    {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = value;
+    }
+
+    /**
+     * Add all the values of another list to the end of this list.
+     *
+     * @param other Other list
+     */
+    public void addAll(IntList other)
+    {
+        if (size + other.size > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, size + other.size));
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Get a value by index.
+     *
+     * @param index Index
+     * @return Value
+     */
+    public int get(int index)
+    {
+        if (index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return data[index];
+    }
+
+    /**
+     * Remove all the values (The capacity is kept for reuse).
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Copy the values to a new array with the exact size.
+     *
+     * @return Array of values.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Copy the values to a new array, sorted in ascending order. The
+     * sort is skipped when the values are already in order, which is
+     * the case for almost every chart.
+     *
+     * @return Sorted array of values.
+     */
+    public int[] toSortedArray()
+    {
+        int[] result = toArray();
+
+        for (int i = 1; i < result.length; i++)
+        {
+            if (result[i - 1] > result[i])
+            {
+                Arrays.sort(result);
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+}
@@ -76,7 +76,7 @@ public class JudgementCalculator
     private static int[] calculateTimings(Beatmap beatmap)
     {
         // Get overall difficulty
-        double overall = Double.parseDouble(beatmap.getProperties().get("OverallDifficulty"));
+        double overall = beatmap.getMetadata().getOverallDifficulty();
         double overallOffset = (overall * 3) + 0.5;
 
         // Create timings array
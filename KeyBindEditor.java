@@ -123,6 +123,16 @@ public class KeyBindEditor extends Actor
         }
     }
 
+    /**
+     * Is a key bind being edited? (Then the keys are for the key bind)
+     *
+     * @return Editing or not
+     */
+    public static boolean isEditing()
+    {
+        return selected != null;
+    }
+
     /**
      * Generate text.
      *
@@ -19,6 +19,9 @@ public class KeypressHandler extends Actor
     /** Key flashes, in a row */
     private final KeyFlash[] keyFlashes;
 
+    /** Is the retry key down? */
+    private boolean retryPressed = false;
+
     /**
      * Constructor for objects of class KeypressHandler
      */
@@ -78,6 +81,11 @@ public class KeypressHandler extends Actor
                 registerKeyRelease(key);
             }
         }
+
+        // Retry when the retry key turns from up to down
+        boolean retryDown = Greenfoot.isKeyDown(Constants.RETRY_KEY);
+        if (retryDown && !retryPressed) ((BeatmapWorld) getWorld()).restart();
+        retryPressed = retryDown;
     }
 
     /**
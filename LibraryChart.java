@@ -0,0 +1,159 @@
+import java.io.File;
+
+/**
+ * A chart in the library index: one difficulty of a chart file, with the
+ * header metadata and the note statistics read when it was indexed, and
+ * the ContentHash of the chart file and its audio file.
+ *
+ * @author agent
+ * @since 2026-10-18 04:28
+ */
+@SuppressWarnings("WeakerAccess")
+public class LibraryChart
+{
+    /** Chart file (On the disk or in an archive) */
+    private final File file;
+
+    /** Difficulty name */
+    private final String difficulty;
+
+    /** Header metadata */
+    private final BeatmapMetadata metadata;
+
+    /** Number of notes */
+    private final int noteCount;
+
+    /** Duration of the chart in ms (Time of the last note) */
+    private final int duration;
+
+    /** Main BPM (0 if unknown) */
+    private final double bpm;
+
+    /** Density curve, chords, jacks, streams and breaks */
+    private final ChartStatistics statistics;
+
+    /** ContentHash of the chart file */
+    private final long hash;
+
+    /** ContentHash of the audio file (0 if it can't be read) */
+    private final long audioHash;
+
+    /** Size of the chart file when it was indexed */
+    private final long length;
+
+    /** Last modified time of the chart file when it was indexed */
+    private final long lastModified;
+
+    /** Set that the chart is in (Set by the LibrarySet) */
+    private LibrarySet set;
+
+    /**
+     * Construct a library chart.
+     *
+     * @param file Chart file
+     * @param difficulty Difficulty name
+     * @param metadata Header metadata
+     * @param noteCount Number of notes
+     * @param duration Duration in ms
+     * @param bpm Main BPM
+     * @param statistics Note statistics
+     * @param hash ContentHash of the chart file
+     * @param audioHash ContentHash of the audio file
+     * @param length Size of the chart file
+     * @param lastModified Last modified time of the chart file
+     */
+    public LibraryChart(File file, String difficulty, BeatmapMetadata metadata, int noteCount, int duration, double bpm,
+                        ChartStatistics statistics, long hash, long audioHash, long length, long lastModified)
+    {
+        this.file = file;
+        this.difficulty = difficulty;
+        this.metadata = metadata;
+        this.noteCount = noteCount;
+        this.duration = duration;
+        this.bpm = bpm;
+        this.statistics = statistics;
+        this.hash = hash;
+        this.audioHash = audioHash;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public String getDifficulty()
+    {
+        return difficulty;
+    }
+
+    public BeatmapMetadata getMetadata()
+    {
+        return metadata;
+    }
+
+    public int getNoteCount()
+    {
+        return noteCount;
+    }
+
+    public int getDuration()
+    {
+        return duration;
+    }
+
+    public double getBpm()
+    {
+        return bpm;
+    }
+
+    public ChartStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Get the average notes per second, a simple measure of difficulty.
+     *
+     * @return Notes per second
+     */
+    public double getNotesPerSecond()
+    {
+        return duration <= 0 ? 0 : noteCount * 1000.0 / duration;
+    }
+
+    public long getHash()
+    {
+        return hash;
+    }
+
+    public long getAudioHash()
+    {
+        return audioHash;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public LibrarySet getSet()
+    {
+        return set;
+    }
+
+    public void setSet(LibrarySet set)
+    {
+        this.set = set;
+    }
+}
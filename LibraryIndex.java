@@ -0,0 +1,472 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The library index stores the beatmap sets, their difficulties, and the
+ * header metadata and note statistics of every chart in the cache
+ * directory, so the main menu does not need to list every directory and
+ * parse every chart on every start.
+ *
+ * On load, each set on the disk is checked against the index by size and
+ * last modified time (the set itself, and every chart file of directory
+ * sets), and only the sets that changed are read again. The sets are
+ * checked and read in parallel, since it's mostly waiting for the disk.
+ * While the game is running, LibraryWatcher refreshes the sets that change.
+ *
+ * Every chart, audio file and background is hashed with ContentHash when
+ * it is read. Libraries often have several copies of the same set (Eg.
+ * re-uploads, or an archive next to its extracted directory), so a set
+ * whose charts are all in another set is hidden from getSets(), and the
+ * compiled charts and decoded images are shared by hash.
+ *
+ * Index file format (DataOutputStream):
+ * - int magic, int version, int set count
+ * - Set: UTF name, long length, long last modified, UTF background ("" = none),
+ *        long background hash, int chart count
+ * - Chart: UTF file name, long length, long last modified, long hash, long audio hash,
+ *          UTF difficulty, metadata (See BeatmapMetadata.write()), int note count, int duration, double BPM,
+ *          statistics (See ChartStatistics.write())
+ * Strings in the metadata of a set are shared between its difficulties.
+ *
+ * @author agent
+ * @since 2026-10-18 04:28
+ */
+@SuppressWarnings("WeakerAccess")
+public class LibraryIndex
+{
+    /** Magic number at the start of the index file ("BBIL") */
+    private static final int MAGIC = 0x4242494C;
+
+    /** Version of the format. Increase it when the format changes. */
+    private static final int VERSION = 5;
+
+    /** Index file */
+    private static final File FILE = new File(Constants.CACHE_DIRECTORY, "library.idx");
+
+    /**
+     * All the sets in the beatmaps directory sorted by name, including the
+     * ones that can't be played. The list is replaced, not changed, when
+     * the index is refreshed, so it can be read from any thread.
+     */
+    private volatile List<LibrarySet> allSets;
+
+    /** The sets that can be played, without duplicates (Replaced with allSets) */
+    private volatile List<LibrarySet> sets;
+
+    /**
+     * Construct a library index.
+     *
+     * @param allSets All the sets in the beatmaps directory
+     */
+    private LibraryIndex(List<LibrarySet> allSets)
+    {
+        this.allSets = allSets;
+        this.sets = findPlayableSets(allSets);
+    }
+
+    /**
+     * Load the index as it was saved, without checking the disk, so the
+     * sets can be shown right away. Call refresh() to update it with the
+     * changes on the disk. (The LibraryWatcher does it in the background)
+     *
+     * @return Library index
+     */
+    public static LibraryIndex load()
+    {
+        return new LibraryIndex(new ArrayList<>(read().values()));
+    }
+
+    /**
+     * Check sets on the disk against the index, and read the changed ones
+     * again. The index file is saved if anything changed.
+     *
+     * @param names Names of the sets to check (Null = every set)
+     * @return Changed or not
+     */
+    public synchronized boolean refresh(Collection<String> names)
+    {
+        Map<String, LibrarySet> oldSets = new HashMap<>();
+        for (LibrarySet set : allSets)
+        {
+            oldSets.put(set.getDirectory().getName(), set);
+        }
+
+        // Find the sets to check. Sets that are not checked stay the same.
+        Map<String, LibrarySet> result = new TreeMap<>();
+        List<File> setFiles = new ArrayList<>();
+        if (names == null)
+        {
+            File[] files = Constants.BEATMAP_DIRECTORY.listFiles();
+            if (files == null) throw new RuntimeException("Error: Failed to get file list. (Maybe there are no files?)");
+            setFiles.addAll(Arrays.asList(files));
+        }
+        else
+        {
+            result.putAll(oldSets);
+            for (String name : names)
+            {
+                result.remove(name);
+                setFiles.add(new File(Constants.BEATMAP_DIRECTORY, name));
+            }
+        }
+
+        // Only directories and .osz archives could be beatmaps (Hidden ones are being imported)
+        setFiles.removeIf(file -> !(file.isDirectory() || BeatmapFiles.isArchive(file)) || file.getName().startsWith("."));
+
+        // Check and read the sets in parallel.
+        List<LibrarySet> sets = ParallelScan.map(setFiles, file ->
+        {
+            LibrarySet old = oldSets.get(file.getName());
+            return old != null && isUpToDate(old, file) ? old : scanSet(file, old);
+        });
+
+        // Changed if any set is read again, added or deleted.
+        boolean changed = false;
+        for (LibrarySet set : sets)
+        {
+            if (set != oldSets.get(set.getDirectory().getName())) changed = true;
+            result.put(set.getDirectory().getName(), set);
+        }
+        if (!result.keySet().equals(oldSets.keySet())) changed = true;
+        if (!changed) return false;
+
+        allSets = new ArrayList<>(result.values());
+        this.sets = findPlayableSets(allSets);
+        try
+        {
+            save();
+        }
+        catch (IOException e)
+        {
+            // The index is built again next time.
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * Check if an indexed set is still the same as the set on the disk.
+     *
+     * @param set Indexed set
+     * @param file Set directory or archive
+     * @return Up to date or not
+     */
+    private static boolean isUpToDate(LibrarySet set, File file)
+    {
+        if (set.getLength() != lengthOf(file) || set.getLastModified() != file.lastModified()) return false;
+
+        // Archives can't change without changing the archive. Files in a
+        // directory can be edited without changing the directory.
+        if (BeatmapFiles.isArchive(file)) return true;
+
+        for (LibraryChart chart : set.getCharts())
+        {
+            if (chart.getLength() != chart.getFile().length()) return false;
+            if (chart.getLastModified() != chart.getFile().lastModified()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read a set from the disk. The charts that did not change are reused
+     * from the old index entry.
+     *
+     * @param file Set directory or archive
+     * @param old Old index entry (Can be null)
+     * @return Library set
+     */
+    private static LibrarySet scanSet(File file, LibrarySet old)
+    {
+        File[] files = BeatmapFiles.listFiles(file);
+        if (files == null) files = new File[0];
+        Arrays.sort(files);
+
+        List<LibraryChart> charts = new ArrayList<>();
+        Map<String, String> strings = new HashMap<>();
+        Map<String, Long> audioHashes = new HashMap<>();
+        for (File chartFile : files)
+        {
+            ChartFormat format = ChartFormats.find(chartFile);
+            if (format == null) continue;
+
+            long length = BeatmapFiles.length(chartFile);
+            long lastModified = BeatmapFiles.lastModified(chartFile);
+
+            // Reuse the old entries if the chart file did not change.
+            List<LibraryChart> reused = new ArrayList<>();
+            if (old != null)
+            {
+                for (LibraryChart chart : old.getCharts())
+                {
+                    if (chart.getFile().getName().equals(chartFile.getName()) &&
+                            chart.getLength() == length && chart.getLastModified() == lastModified)
+                    {
+                        reused.add(chart);
+                    }
+                }
+            }
+            if (!reused.isEmpty())
+            {
+                // The audio file could have changed without the chart file.
+                for (LibraryChart chart : reused)
+                {
+                    long audioHash = hashAudio(file, chart.getMetadata(), audioHashes);
+                    charts.add(audioHash == chart.getAudioHash() ? chart : new LibraryChart(chartFile,
+                            chart.getDifficulty(), chart.getMetadata(), chart.getNoteCount(), chart.getDuration(),
+                            chart.getBpm(), chart.getStatistics(), chart.getHash(), audioHash, length, lastModified));
+                }
+                continue;
+            }
+
+            // Read the charts. They are compiled into ChartCache at the same
+            // time, so the note statistics don't cost an extra read.
+            try
+            {
+                long hash = ContentHash.hash(chartFile);
+                for (String difficulty : format.listDifficulties(chartFile))
+                {
+                    ChartData chart = ChartCache.load(chartFile, difficulty, hash);
+                    BeatmapMetadata metadata = BeatmapMetadata.fromProperties(chart.getProperties(), strings);
+                    charts.add(new LibraryChart(chartFile, difficulty, metadata, chart.countNotes(),
+                            chart.getLastNoteTime(), ScrollTimeline.findMainBpm(chart), ChartStatistics.compute(chart), hash,
+                            hashAudio(file, metadata, audioHashes), length, lastModified));
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                e.printStackTrace();
+            }
+        }
+
+        File background = BeatmapReader.findBackground(files);
+        return new LibrarySet(file, background, hashOrZero(background), charts, lengthOf(file), file.lastModified());
+    }
+
+    /**
+     * Hash the audio file of a chart. The charts of a set usually share
+     * one audio file, so it's only hashed once per set.
+     *
+     * @param set Set directory or archive
+     * @param metadata Metadata of the chart
+     * @param audioHashes Hashes of the audio files read in this set, by file name
+     * @return ContentHash of the audio file (0 if it can't be read)
+     */
+    private static long hashAudio(File set, BeatmapMetadata metadata, Map<String, Long> audioHashes)
+    {
+        if (metadata.getAudioFilename() == null) return 0;
+        return audioHashes.computeIfAbsent(metadata.getAudioFilename(),
+                name -> hashOrZero(new File(set, name)));
+    }
+
+    /**
+     * Hash a file, or return 0 if it can't be read.
+     *
+     * @param file File on the disk or in an archive (Can be null)
+     * @return ContentHash
+     */
+    private static long hashOrZero(File file)
+    {
+        if (file == null) return 0;
+
+        try
+        {
+            return ContentHash.hash(file);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Missing files are reported when the set is played.
+            return 0;
+        }
+    }
+
+    /**
+     * Find the sets that can be played: the ones with a background and at
+     * least one chart. Duplicate sets are left out: a set is a duplicate if
+     * every chart in it (Same chart file hash and difficulty) is in a set
+     * with more charts, or in a set with the same charts and a smaller name.
+     *
+     * @param allSets All the sets, sorted by name
+     * @return Playable sets without duplicates, sorted by name
+     */
+    private static List<LibrarySet> findPlayableSets(List<LibrarySet> allSets)
+    {
+        List<LibrarySet> playable = new ArrayList<>();
+        for (LibrarySet set : allSets)
+        {
+            if (set.getBackground() != null && !set.getCharts().isEmpty()) playable.add(set);
+        }
+
+        // Check the sets with the most charts first, so the most complete copy is kept.
+        List<LibrarySet> bySize = new ArrayList<>(playable);
+        bySize.sort((a, b) -> Integer.compare(b.getCharts().size(), a.getCharts().size()));
+
+        Set<String> seenCharts = new HashSet<>();
+        Set<LibrarySet> duplicates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LibrarySet set : bySize)
+        {
+            boolean duplicate = true;
+            for (LibraryChart chart : set.getCharts())
+            {
+                if (seenCharts.add(chart.getHash() + "#" + chart.getDifficulty().toLowerCase())) duplicate = false;
+            }
+            if (duplicate) duplicates.add(set);
+        }
+
+        playable.removeIf(duplicates::contains);
+        return Collections.unmodifiableList(playable);
+    }
+
+    /**
+     * Get the size of a set for the up to date check.
+     *
+     * @param file Set directory or archive
+     * @return Size of the archive, or 0 for directories.
+     */
+    private static long lengthOf(File file)
+    {
+        return BeatmapFiles.isArchive(file) ? file.length() : 0;
+    }
+
+    /**
+     * Read the index file.
+     *
+     * @return Indexed sets sorted by name (Empty if there's no index or it's broken)
+     */
+    private static Map<String, LibrarySet> read()
+    {
+        Map<String, LibrarySet> sets = new TreeMap<>();
+        if (!FILE.isFile()) return sets;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FILE))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return sets;
+
+            int setCount = in.readInt();
+            for (int i = 0; i < setCount; i++)
+            {
+                File directory = new File(Constants.BEATMAP_DIRECTORY, in.readUTF());
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                String background = in.readUTF();
+                long backgroundHash = in.readLong();
+
+                int chartCount = in.readInt();
+                List<LibraryChart> charts = new ArrayList<>(chartCount);
+                Map<String, String> strings = new HashMap<>();
+                for (int c = 0; c < chartCount; c++)
+                {
+                    File file = new File(directory, in.readUTF());
+                    long chartLength = in.readLong();
+                    long chartLastModified = in.readLong();
+                    long hash = in.readLong();
+                    long audioHash = in.readLong();
+                    String difficulty = in.readUTF();
+                    BeatmapMetadata metadata = BeatmapMetadata.read(in, strings);
+                    int noteCount = in.readInt();
+                    int duration = in.readInt();
+                    double bpm = in.readDouble();
+                    ChartStatistics statistics = ChartStatistics.read(in);
+
+                    charts.add(new LibraryChart(file, difficulty, metadata, noteCount, duration, bpm, statistics,
+                            hash, audioHash, chartLength, chartLastModified));
+                }
+
+                sets.put(directory.getName(), new LibrarySet(directory,
+                        background.isEmpty() ? null : new File(directory, background), backgroundHash,
+                        charts, length, lastModified));
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Broken index, just build it again.
+            e.printStackTrace();
+            sets.clear();
+        }
+
+        return sets;
+    }
+
+    /**
+     * Write the index file. It is written to a temporary file first, so
+     * that a half written index will never be read.
+     *
+     * @throws IOException File write error
+     */
+    public synchronized void save() throws IOException
+    {
+        if (!Constants.CACHE_DIRECTORY.isDirectory() && !Constants.CACHE_DIRECTORY.mkdirs())
+            throw new IOException("Error: Failed to create " + Constants.CACHE_DIRECTORY);
+
+        File temp = File.createTempFile("library", ".tmp", Constants.CACHE_DIRECTORY);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(allSets.size());
+
+            for (LibrarySet set : allSets)
+            {
+                out.writeUTF(set.getDirectory().getName());
+                out.writeLong(set.getLength());
+                out.writeLong(set.getLastModified());
+                out.writeUTF(set.getBackground() == null ? "" : set.getBackground().getName());
+                out.writeLong(set.getBackgroundHash());
+
+                out.writeInt(set.getCharts().size());
+                for (LibraryChart chart : set.getCharts())
+                {
+                    out.writeUTF(chart.getFile().getName());
+                    out.writeLong(chart.getLength());
+                    out.writeLong(chart.getLastModified());
+                    out.writeLong(chart.getHash());
+                    out.writeLong(chart.getAudioHash());
+                    out.writeUTF(chart.getDifficulty());
+                    chart.getMetadata().write(out);
+                    out.writeInt(chart.getNoteCount());
+                    out.writeInt(chart.getDuration());
+                    out.writeDouble(chart.getBpm());
+                    chart.getStatistics().write(out);
+                }
+            }
+        }
+        Files.move(temp.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    /**
+     * Get the sets that can be played, without duplicates.
+     *
+     * @return Playable sets
+     */
+    public List<LibrarySet> getSets()
+    {
+        return sets;
+    }
+
+    public List<LibrarySet> getAllSets()
+    {
+        return allSets;
+    }
+}
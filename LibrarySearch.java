@@ -0,0 +1,387 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory search index over the charts of the library. The words of
+ * the title, artist, creator, difficulty name and tags of every chart are
+ * put in a sorted token array with the charts that have them, so a prefix
+ * search is a binary search. The chart order of every sort key is sorted
+ * in advance, so a search only needs to walk that order once.
+ *
+ * "Difficulty" is the star rating from DifficultyCalculator, which is
+ * taken when the index is built (Charts that are not rated yet are
+ * sorted first). A query can filter the star rating with "stars>3",
+ * "stars<=4.5", etc.
+ *
+ * Eg. "orange dead" finds the charts with a word starting with "orange"
+ * and a word starting with "dead", and "dead stars>2" finds the ones with
+ * a word starting with "dead" rated over 2 stars.
+ *
+ * @author agent
+ * @since 2026-10-18 04:35
+ */
+@SuppressWarnings("WeakerAccess")
+public class LibrarySearch
+{
+    /**
+     * Ways to sort the search results.
+     */
+    public enum SortKey
+    {
+        TITLE("Title"),
+        ARTIST("Artist"),
+        DIFFICULTY("Difficulty"),
+        LENGTH("Length"),
+        BPM("BPM"),
+        NOTE_COUNT("Notes");
+
+        /** Name to show */
+        private final String displayName;
+
+        SortKey(String displayName)
+        {
+            this.displayName = displayName;
+        }
+
+        /**
+         * Get the next sort key (Loops back to the first one)
+         *
+         * @return Next sort key
+         */
+        public SortKey next()
+        {
+            return values()[(ordinal() + 1) % values().length];
+        }
+
+        public String getDisplayName()
+        {
+            return displayName;
+        }
+    }
+
+    /** Star rating filter in a query, Eg. "stars>3.5" */
+    private static final Pattern RATING_FILTER = Pattern.compile("\\bstars?\\s*(<=|>=|<|>|=)\\s*(\\d+(?:\\.\\d+)?)",
+            Pattern.CASE_INSENSITIVE);
+
+    /** Every chart in the library */
+    private final LibraryChart[] charts;
+
+    /** Every set in the library */
+    private final LibrarySet[] sets;
+
+    /** The set id of each chart */
+    private final int[] chartSets;
+
+    /** Every token, sorted */
+    private final String[] tokens;
+
+    /** Chart ids of each token, sorted */
+    private final int[][] postings;
+
+    /** Star rating of each chart (-1 = not rated yet) */
+    private final double[] ratings;
+
+    /** Chart ids sorted by each sort key */
+    private final int[][] orders;
+
+    /**
+     * Build the search index of a library.
+     *
+     * @param sets Beatmap sets
+     */
+    public LibrarySearch(List<LibrarySet> sets)
+    {
+        // Give every set and chart an id.
+        this.sets = sets.toArray(new LibrarySet[0]);
+        List<LibraryChart> chartList = new ArrayList<>();
+        IntList setIds = new IntList();
+        for (int setId = 0; setId < this.sets.length; setId++)
+        {
+            for (LibraryChart chart : this.sets[setId].getCharts())
+            {
+                chartList.add(chart);
+                setIds.add(setId);
+            }
+        }
+        charts = chartList.toArray(new LibraryChart[0]);
+        chartSets = setIds.toArray();
+
+        ratings = new double[charts.length];
+        for (int id = 0; id < charts.length; id++)
+        {
+            ratings[id] = DifficultyCalculator.getRating(charts[id]);
+        }
+
+        // Collect the charts of each token. Ids are added in order, so the lists are sorted.
+        Map<String, IntList> tokenCharts = new HashMap<>();
+        for (int id = 0; id < charts.length; id++)
+        {
+            BeatmapMetadata metadata = charts[id].getMetadata();
+            for (String field : new String[]{metadata.getTitle(), metadata.getTitleUnicode(), metadata.getArtist(),
+                    metadata.getArtistUnicode(), metadata.getCreator(), metadata.getVersion(), metadata.getTags()})
+            {
+                for (String token : tokenize(field))
+                {
+                    IntList ids = tokenCharts.computeIfAbsent(token, key -> new IntList(4));
+                    if (ids.isEmpty() || ids.get(ids.size() - 1) != id) ids.add(id);
+                }
+            }
+        }
+
+        tokens = tokenCharts.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        postings = new int[tokens.length][];
+        for (int i = 0; i < tokens.length; i++)
+        {
+            postings[i] = tokenCharts.get(tokens[i]).toArray();
+        }
+
+        // Sort orders
+        orders = sortOrders();
+    }
+
+    /**
+     * Search the library.
+     *
+     * @param query Search words (Empty = everything)
+     * @param sortKey How to sort the results
+     * @return Sets with a matching chart, in the order of their first matching chart.
+     */
+    public List<LibrarySet> search(String query, SortKey sortKey)
+    {
+        BitSet matches = findMatches(query);
+        BitSet added = new BitSet(sets.length);
+
+        List<LibrarySet> results = new ArrayList<>();
+        for (int id : orders[sortKey.ordinal()])
+        {
+            if ((matches == null || matches.get(id)) && !added.get(chartSets[id]))
+            {
+                added.set(chartSets[id]);
+                results.add(sets[chartSets[id]]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Search the library for charts.
+     *
+     * @param query Search words (Empty = everything)
+     * @param sortKey How to sort the results
+     * @return Matching charts
+     */
+    public List<LibraryChart> searchCharts(String query, SortKey sortKey)
+    {
+        BitSet matches = findMatches(query);
+
+        List<LibraryChart> results = new ArrayList<>();
+        for (int id : orders[sortKey.ordinal()])
+        {
+            if (matches == null || matches.get(id)) results.add(charts[id]);
+        }
+        return results;
+    }
+
+    /**
+     * Find the charts that match every word and star rating filter of a
+     * query.
+     *
+     * @param query Search words and filters
+     * @return Matching chart ids (Null = every chart)
+     */
+    private BitSet findMatches(String query)
+    {
+        BitSet matches = null;
+
+        // Star rating filters
+        Matcher filter = RATING_FILTER.matcher(query);
+        while (filter.find())
+        {
+            String operator = filter.group(1);
+            double value = Double.parseDouble(filter.group(2));
+
+            BitSet filterMatches = new BitSet(charts.length);
+            for (int id = 0; id < charts.length; id++)
+            {
+                if (ratings[id] >= 0 && compare(ratings[id], operator, value)) filterMatches.set(id);
+            }
+
+            if (matches == null) matches = filterMatches;
+            else matches.and(filterMatches);
+        }
+        query = filter.replaceAll(" ");
+
+        for (String word : tokenize(query))
+        {
+            // Every token that starts with the word is next to each other in the sorted array.
+            BitSet wordMatches = new BitSet(charts.length);
+            int index = Arrays.binarySearch(tokens, word);
+            if (index < 0) index = -index - 1;
+            for (; index < tokens.length && tokens[index].startsWith(word); index++)
+            {
+                for (int id : postings[index]) wordMatches.set(id);
+            }
+
+            if (matches == null) matches = wordMatches;
+            else matches.and(wordMatches);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Compare a star rating with a filter.
+     *
+     * @param rating Star rating
+     * @param operator "<", "<=", ">", ">=" or "="
+     * @param value Filter value
+     * @return Matches or not
+     */
+    private static boolean compare(double rating, String operator, double value)
+    {
+        switch (operator)
+        {
+            case "<": return rating < value;
+            case "<=": return rating <= value;
+            case ">": return rating > value;
+            case ">=": return rating >= value;
+            default: return Math.abs(rating - value) < 0.05;
+        }
+    }
+
+    /**
+     * Sort the chart ids by every sort key. The ids are sorted by title
+     * once with string comparisons, and the other keys are packed with the
+     * title rank into longs (Key in the high bits, so ties are sorted by
+     * title) and sorted as primitives.
+     *
+     * @return Chart ids sorted by each sort key
+     */
+    private int[][] sortOrders()
+    {
+        int count = charts.length;
+        String[] titles = new String[count], artists = new String[count];
+        for (int id = 0; id < count; id++)
+        {
+            titles[id] = lowerCase(charts[id].getMetadata().getTitle());
+            artists[id] = lowerCase(charts[id].getMetadata().getArtist());
+        }
+
+        // Title (Ties: artist, then difficulty)
+        Integer[] byTitle = new Integer[count];
+        for (int id = 0; id < count; id++) byTitle[id] = id;
+        Arrays.sort(byTitle, Comparator.comparing((Integer id) -> titles[id])
+                .thenComparing(id -> artists[id])
+                .thenComparingDouble(id -> ratings[id]));
+
+        int[] titleOrder = new int[count];
+        int[] titleRank = new int[count];
+        for (int rank = 0; rank < count; rank++)
+        {
+            titleOrder[rank] = byTitle[rank];
+            titleRank[byTitle[rank]] = rank;
+        }
+
+        // Artist (Ties: title)
+        Integer[] byArtist = byTitle.clone();
+        Arrays.sort(byArtist, Comparator.comparing((Integer id) -> artists[id]).thenComparingInt(id -> titleRank[id]));
+
+        // Number keys
+        int[] difficulty = new int[count], length = new int[count], bpm = new int[count], notes = new int[count];
+        for (int id = 0; id < count; id++)
+        {
+            difficulty[id] = (int) (ratings[id] * 1000);
+            length[id] = charts[id].getDuration();
+            bpm[id] = (int) (charts[id].getBpm() * 1000);
+            notes[id] = charts[id].getNoteCount();
+        }
+
+        int[][] result = new int[SortKey.values().length][];
+        result[SortKey.TITLE.ordinal()] = titleOrder;
+        result[SortKey.ARTIST.ordinal()] = Arrays.stream(byArtist).mapToInt(Integer::intValue).toArray();
+        result[SortKey.DIFFICULTY.ordinal()] = sortByKey(difficulty, titleRank, titleOrder);
+        result[SortKey.LENGTH.ordinal()] = sortByKey(length, titleRank, titleOrder);
+        result[SortKey.BPM.ordinal()] = sortByKey(bpm, titleRank, titleOrder);
+        result[SortKey.NOTE_COUNT.ordinal()] = sortByKey(notes, titleRank, titleOrder);
+        return result;
+    }
+
+    /**
+     * Sort the chart ids by a number key, ties sorted by title.
+     *
+     * @param keys Key of each chart
+     * @param titleRank Title rank of each chart
+     * @param titleOrder Chart id of each title rank
+     * @return Sorted ids
+     */
+    private static int[] sortByKey(int[] keys, int[] titleRank, int[] titleOrder)
+    {
+        long[] packed = new long[keys.length];
+        for (int id = 0; id < keys.length; id++)
+        {
+            packed[id] = ((long) keys[id] << 32) | titleRank[id];
+        }
+        Arrays.sort(packed);
+
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+        {
+            result[i] = titleOrder[(int) packed[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Split a text into lower case words. (Letters and digits)
+     *
+     * @param text Text (Can be null)
+     * @return Words
+     */
+    private static List<String> tokenize(String text)
+    {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++)
+        {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) start = i;
+            else if (!wordChar && start >= 0)
+            {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Lower case for sorting.
+     *
+     * @param text Text (Can be null)
+     * @return Lower case text ("" if null)
+     */
+    private static String lowerCase(String text)
+    {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public int getChartCount()
+    {
+        return charts.length;
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.File;
+import java.util.List;
+
+/**
+ * A beatmap set in the library index: the set directory (or archive), its
+ * background image and its charts.
+ *
+ * @author agent
+ * @since 2026-10-18 04:28
+ */
+@SuppressWarnings("WeakerAccess")
+public class LibrarySet
+{
+    /** Beatmap set directory or archive */
+    private final File directory;
+
+    /** Background image */
+    private final File background;
+
+    /** ContentHash of the background image (0 if there's none) */
+    private final long backgroundHash;
+
+    /** Charts, in the order of the difficulty buttons */
+    private final List<LibraryChart> charts;
+
+    /** Size of the set (Archives only, 0 for directories) when it was indexed */
+    private final long length;
+
+    /** Last modified time of the set when it was indexed */
+    private final long lastModified;
+
+    /**
+     * Construct a library set.
+     *
+     * @param directory Beatmap set directory or archive
+     * @param background Background image
+     * @param backgroundHash ContentHash of the background image
+     * @param charts Charts
+     * @param length Size of the set
+     * @param lastModified Last modified time of the set
+     */
+    public LibrarySet(File directory, File background, long backgroundHash, List<LibraryChart> charts,
+                      long length, long lastModified)
+    {
+        this.directory = directory;
+        this.background = background;
+        this.backgroundHash = backgroundHash;
+        this.charts = charts;
+        this.length = length;
+        this.lastModified = lastModified;
+
+        for (LibraryChart chart : charts) chart.setSet(this);
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public File getBackground()
+    {
+        return background;
+    }
+
+    public long getBackgroundHash()
+    {
+        return backgroundHash;
+    }
+
+    public List<LibraryChart> getCharts()
+    {
+        return charts;
+    }
+
+    public long getLength()
+    {
+        return length;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+}
@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class watches the beatmaps directory and its set directories while
+ * the game is running, and refreshes the sets that change in the library
+ * index. Copying a pack creates a lot of events, so the changed sets are
+ * collected until the directory has been quiet for a moment, and then
+ * only those sets are read again.
+ *
+ * It also watches the import directory, and imports the archives that are
+ * dropped into it when it's quiet. (The imported sets are then seen in the
+ * beatmaps directory)
+ *
+ * When it starts, every set is checked once, so the main menu can show
+ * the saved index right away instead of waiting for the check. The main
+ * menu checks getGeneration() every act, and updates its covers when it
+ * changes.
+ *
+ * @author agent
+ * @since 2026-10-18 04:31
+ */
+@SuppressWarnings("WeakerAccess")
+public class LibraryWatcher implements Runnable
+{
+    /** How long the directory has to be quiet before refreshing, in ms */
+    private static final int QUIET_MS = 500;
+
+    /** How long to wait after an error before checking everything again, in ms */
+    private static final int ERROR_RETRY_MS = 5000;
+
+    /** The running watcher (There's only one at a time) */
+    private static LibraryWatcher instance;
+
+    /** The library to refresh */
+    private final LibraryIndex library;
+
+    /** Watch service */
+    private final WatchService watchService;
+
+    /** Watched directory of each watch key */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /** Root: the beatmaps directory */
+    private final Path root;
+
+    /** The import directory */
+    private final Path importDirectory;
+
+    /** Names of the sets that changed since the last refresh */
+    private final Set<String> changedSets = new HashSet<>();
+
+    /** Events are lost, every set needs to be checked (At the start too, since the sets could change while the game is closed) */
+    private boolean overflow = true;
+
+    /** Archives are added to the import directory since the last refresh */
+    private boolean importChanged = false;
+
+    /** Increased every time the library changes */
+    private volatile int generation = 0;
+
+    /**
+     * Construct a library watcher.
+     *
+     * @param library Library to refresh
+     * @throws IOException Can't watch the directory
+     */
+    private LibraryWatcher(LibraryIndex library) throws IOException
+    {
+        this.library = library;
+        this.root = Constants.BEATMAP_DIRECTORY.toPath().toAbsolutePath().normalize();
+        this.importDirectory = Constants.IMPORT_DIRECTORY.toPath().toAbsolutePath().normalize();
+        this.watchService = root.getFileSystem().newWatchService();
+        registerAll();
+
+        try
+        {
+            Files.createDirectories(importDirectory);
+            register(importDirectory);
+        }
+        catch (IOException e)
+        {
+            // Then archives are only imported when the menu opens.
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Start watching for a library, and stop the previous watcher.
+     *
+     * @param library Library to refresh
+     * @return Watcher (Null if the directory can't be watched)
+     */
+    public static synchronized LibraryWatcher watch(LibraryIndex library)
+    {
+        if (instance != null) instance.stop();
+        instance = null;
+
+        try
+        {
+            instance = new LibraryWatcher(library);
+        }
+        catch (IOException e)
+        {
+            // Then it just won't update live.
+            e.printStackTrace();
+            return null;
+        }
+
+        Thread thread = new Thread(instance, "Library watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return instance;
+    }
+
+    /**
+     * Stop watching.
+     */
+    public void stop()
+    {
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Watch the beatmaps directory and every set directory in it.
+     *
+     * @throws IOException Can't watch the directory
+     */
+    private void registerAll() throws IOException
+    {
+        register(root);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root))
+        {
+            for (Path path : stream)
+            {
+                if (!Files.isDirectory(path) || isHidden(path)) continue;
+
+                try
+                {
+                    register(path);
+                }
+                catch (IOException e)
+                {
+                    // Deleted while listing
+                }
+            }
+        }
+    }
+
+    /**
+     * Watch a directory.
+     *
+     * @param directory Directory
+     * @throws IOException Can't watch the directory
+     */
+    private void register(Path directory) throws IOException
+    {
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        directories.put(key, directory);
+    }
+
+    /**
+     * Is a file in the beatmaps directory hidden? (Being imported)
+     *
+     * @param path File
+     * @return Hidden or not
+     */
+    private static boolean isHidden(Path path)
+    {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    /**
+     * Watch loop: collect the events, and refresh the library when it's
+     * quiet. It only stops when the watcher is stopped. An error (Eg. a
+     * set deleted while it's registered) is reported, and then everything
+     * is checked again, as if events were lost.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                // Wait for the first event, then wait until it's quiet.
+                boolean waiting = !changedSets.isEmpty() || overflow || importChanged;
+                WatchKey key = waiting ? watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS) : watchService.take();
+
+                if (key == null)
+                {
+                    refresh();
+                    continue;
+                }
+
+                try
+                {
+                    Path directory = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            overflow = true;
+                            continue;
+                        }
+                        if (directory == null) continue;
+
+                        Path path = directory.resolve((Path) event.context());
+                        if (directory.equals(importDirectory))
+                        {
+                            // An archive is dropped in (Or still being copied)
+                            if (event.kind() != StandardWatchEventKinds.ENTRY_DELETE &&
+                                    path.getFileName().toString().toLowerCase().endsWith(".osz")) importChanged = true;
+                        }
+                        else if (directory.equals(root))
+                        {
+                            // Hidden directories are sets being imported, they're moved into place when done.
+                            if (isHidden(path)) continue;
+
+                            // A set is added, removed or replaced.
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+                            {
+                                try
+                                {
+                                    register(path);
+                                }
+                                catch (IOException e)
+                                {
+                                    // Deleted already
+                                }
+                            }
+                            changedSets.add(path.getFileName().toString());
+                        }
+                        else
+                        {
+                            // A file in a set is changed.
+                            changedSets.add(directory.getFileName().toString());
+                        }
+                    }
+                }
+                finally
+                {
+                    // Keep getting the events of this directory, even if one of them failed.
+                    if (!key.reset()) directories.remove(key);
+                }
+            }
+            catch (InterruptedException | ClosedWatchServiceException e)
+            {
+                // Stopped
+                return;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Check everything again after a while, in case events were lost.
+                e.printStackTrace();
+                overflow = true;
+                try
+                {
+                    Thread.sleep(ERROR_RETRY_MS);
+                }
+                catch (InterruptedException stopped)
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Refresh the changed sets in the library, and import the new
+     * archives.
+     *
+     * @throws IOException Can't watch the directory
+     */
+    private void refresh() throws IOException
+    {
+        if (importChanged) OszImporter.importFolderInBackground();
+        importChanged = false;
+
+        try
+        {
+            if (overflow)
+            {
+                // Some new directories might not be watched.
+                registerAll();
+                if (library.refresh(null)) generation++;
+            }
+            else if (library.refresh(changedSets)) generation++;
+        }
+        catch (RuntimeException e)
+        {
+            // Keep watching, the next change will try again.
+            e.printStackTrace();
+        }
+
+        changedSets.clear();
+        overflow = false;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public int getGeneration()
+    {
+        return generation;
+    }
+}
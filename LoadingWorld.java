@@ -0,0 +1,144 @@
+import greenfoot.Color;
+import greenfoot.Greenfoot;
+import greenfoot.GreenfootImage;
+import greenfoot.World;
+
+/**
+ * The loading screen between the song select and the game. It shows the
+ * progress of the BeatmapLoader while the chart, the audio and the
+ * background are loaded in the background, and only starts the game when
+ * all of them are ready. Escape cancels the load and goes back to the
+ * song select. It's also shown when the next chart of the playlist is not
+ * loaded yet when this one ends.
+ *
+ * @author agent
+ * @since 2026-10-18 04:49
+ */
+public class LoadingWorld extends World
+{
+    /** Width of the progress bar */
+    private static final int BAR_WIDTH = 400;
+
+    /** Height of the progress bar */
+    private static final int BAR_HEIGHT = 6;
+
+    /** The song select to go back to (Null = a new one) */
+    private final MainMenu menu;
+
+    /** Load of the chart */
+    private final BeatmapLoader.Load load;
+
+    /** Width of the progress bar that is drawn */
+    private int shownProgress = -1;
+
+    /**
+     * Start loading a chart.
+     *
+     * @param menu The song select to go back to
+     * @param chart Library chart
+     */
+    public LoadingWorld(MainMenu menu, LibraryChart chart)
+    {
+        this(menu, BeatmapLoader.load(chart));
+    }
+
+    /**
+     * Show a load that is already started.
+     *
+     * @param menu The song select to go back to (Null = a new one)
+     * @param load Load of the chart
+     */
+    public LoadingWorld(MainMenu menu, BeatmapLoader.Load load)
+    {
+        super(Constants.WIDTH, Constants.HEIGHT, 1);
+
+        this.menu = menu;
+        this.load = load;
+
+        drawBackground();
+    }
+
+    /**
+     * Act: Update the progress, start the game when it's loaded, or go
+     * back when it's cancelled.
+     */
+    @Override
+    public void act()
+    {
+        if ("escape".equals(Greenfoot.getKey()))
+        {
+            load.cancel();
+            back();
+            return;
+        }
+
+        if (load.isDone())
+        {
+            PreparedBeatmap prepared = load.get();
+
+            // The chart can't be read, the error is already shown.
+            if (prepared == null)
+            {
+                back();
+                return;
+            }
+
+            BeatmapWorld world = new BeatmapWorld(prepared);
+            Greenfoot.setWorld(world);
+            world.startGame();
+            return;
+        }
+
+        drawProgress();
+    }
+
+    /**
+     * Go back to the song select.
+     */
+    private void back()
+    {
+        Greenfoot.setWorld(menu == null ? new MainMenu() : menu);
+    }
+
+    /**
+     * Draw the background and the name of the chart.
+     */
+    private void drawBackground()
+    {
+        GreenfootImage background = getBackground();
+        background.setColor(Color.BLACK);
+        background.fill();
+
+        // Draw the title and the difficulty centered above the progress bar.
+        BeatmapMetadata metadata = load.getChart().getMetadata();
+        GreenfootImage title = new GreenfootImage(metadata.getTitle(), 24, Color.WHITE, null);
+        GreenfootImage difficulty = new GreenfootImage(load.getChart().getDifficulty(), 16, Color.LIGHT_GRAY, null);
+        GreenfootImage hint = new GreenfootImage("Press Esc to cancel", 14, Color.GRAY, null);
+
+        int y = Constants.HEIGHT / 2;
+        background.drawImage(title, Constants.WIDTH / 2 - title.getWidth() / 2, y - 60);
+        background.drawImage(difficulty, Constants.WIDTH / 2 - difficulty.getWidth() / 2, y - 30);
+        background.drawImage(hint, Constants.WIDTH / 2 - hint.getWidth() / 2, y + 30);
+
+        drawProgress();
+    }
+
+    /**
+     * Draw the progress bar, if the progress changed.
+     */
+    private void drawProgress()
+    {
+        int progress = (int) Math.round(load.getProgress() * BAR_WIDTH);
+        if (progress == shownProgress) return;
+        shownProgress = progress;
+
+        int x = Constants.WIDTH / 2 - BAR_WIDTH / 2;
+        int y = Constants.HEIGHT / 2 - BAR_HEIGHT / 2;
+
+        GreenfootImage background = getBackground();
+        background.setColor(Color.DARK_GRAY);
+        background.fillRect(x, y, BAR_WIDTH, BAR_HEIGHT);
+        background.setColor(Color.WHITE);
+        background.fillRect(x, y, progress, BAR_HEIGHT);
+    }
+}
@@ -1,11 +1,17 @@
+import greenfoot.Actor;
 import greenfoot.Color;
 import greenfoot.Greenfoot;
 import greenfoot.GreenfootImage;
+import greenfoot.MouseInfo;
 import greenfoot.World;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Main song selection menu.
@@ -23,6 +29,60 @@ import java.util.ArrayList;
  */
 public class MainMenu extends World
 {
+    /** How many rows of covers are rendered above and below the screen, so scrolling doesn't wait for them */
+    private static final int PREFETCH_ROWS = 1;
+
+    /** How many acts a scroll key is held before it repeats */
+    private static final int SCROLL_REPEAT_DELAY = 15;
+
+    /** How many acts between the repeats of a held scroll key */
+    private static final int SCROLL_REPEAT_INTERVAL = 4;
+
+    /** How many acts the pointer rests on a chart before it's prefetched */
+    private static final int HOVER_DELAY = 8;
+
+    /** Library of the beatmap sets */
+    private final LibraryIndex library;
+
+    /** Watches the beatmaps directory to update the library (Null if it can't watch) */
+    private final LibraryWatcher watcher;
+
+    /** The library generation that the covers are showing */
+    private int shownGeneration;
+
+    /** The difficulty rating generation that the search is using */
+    private int shownRatingGeneration;
+
+    /** Search index of the library */
+    private LibrarySearch search;
+
+    /** Search box */
+    private final SearchBox searchBox = new SearchBox();
+
+    /** The search results that the grid is showing */
+    private List<LibrarySet> results = new ArrayList<>();
+
+    /** The first row of results on the screen */
+    private int scrollRow = 0;
+
+    /** Covers bound to the sets on the screen and in the prefetch rows */
+    private final Map<LibrarySet, MainMenuSongCover> covers = new IdentityHashMap<>();
+
+    /** Covers that are not bound to a set, to be recycled */
+    private final ArrayDeque<MainMenuSongCover> spareCovers = new ArrayDeque<>();
+
+    /** The scroll key being held (Null if none) */
+    private String heldScrollKey;
+
+    /** How many acts the scroll key has been held */
+    private int heldScrollActs;
+
+    /** The actor under the pointer (Null if none) */
+    private Actor hoveredActor;
+
+    /** How many acts the pointer has been on the hovered actor */
+    private int hoverActs;
+
     /**
      * Constructor for objects of class MainMenu.
      */
@@ -30,14 +90,164 @@ public class MainMenu extends World
     {
         super(Constants.WIDTH, Constants.HEIGHT, 1);
 
-        // Get the beatmap sets.
-        ArrayList<File> beatmapSets = BeatmapReader.listBeatmapSets();
+        // Get the indexed beatmap sets. The watcher checks them against the disk in the background.
+        library = LibraryIndex.load();
+        watcher = LibraryWatcher.watch(library);
+        if (watcher != null) shownGeneration = watcher.getGeneration();
+        else library.refresh(null);
+
+        // Import the archives in the import directory. (The watcher adds the imported sets)
+        OszImporter.importFolderInBackground();
 
         // Draw the background
         drawBackground();
 
+        // Rate the new charts in the background.
+        shownRatingGeneration = DifficultyCalculator.getGeneration();
+        DifficultyCalculator.rateAll(library.getSets());
+
         // Put song selection buttons in.
-        putSongSelectionButtons(beatmapSets);
+        search = new LibrarySearch(library.getSets());
+        showResults(search.search(searchBox.getQuery(), searchBox.getSortKey()));
+    }
+
+    /**
+     * Act: Update the covers when the library, the difficulty ratings or
+     * the search changes.
+     */
+    @Override
+    public void act()
+    {
+        boolean libraryChanged = watcher != null && watcher.getGeneration() != shownGeneration;
+        if (libraryChanged)
+        {
+            shownGeneration = watcher.getGeneration();
+            DifficultyCalculator.rateAll(library.getSets());
+        }
+
+        // Ratings change the difficulty sort and filters.
+        if (DifficultyCalculator.getGeneration() != shownRatingGeneration)
+        {
+            shownRatingGeneration = DifficultyCalculator.getGeneration();
+            libraryChanged = true;
+        }
+
+        if (libraryChanged) search = new LibrarySearch(library.getSets());
+
+        // A new search starts from the top, a library update keeps the scroll.
+        if (searchBox.pollChanged())
+        {
+            scrollRow = 0;
+            libraryChanged = true;
+        }
+        if (libraryChanged) showResults(search.search(searchBox.getQuery(), searchBox.getSortKey()));
+
+        scroll();
+        hover();
+    }
+
+    /**
+     * Prefetch the chart that the pointer rests on, so it's ready when
+     * it's clicked. Resting on a cover prefetches its first difficulty,
+     * which also loads the audio and the background that all of its
+     * difficulties share.
+     */
+    private void hover()
+    {
+        // There's no mouse info when the mouse didn't move, so it's still on the same actor.
+        MouseInfo mouse = Greenfoot.getMouseInfo();
+        Actor actor = mouse == null ? hoveredActor : mouse.getActor();
+        if (actor != null && actor.getWorld() != this) actor = null;
+
+        if (actor != hoveredActor)
+        {
+            hoveredActor = actor;
+            hoverActs = 0;
+        }
+        if (actor == null || ++hoverActs != HOVER_DELAY) return;
+
+        if (actor instanceof MainMenuSongDifficulty)
+        {
+            MainMenuSongDifficulty button = (MainMenuSongDifficulty) actor;
+
+            // Hidden buttons are still there, the pointer is on the cover under them.
+            if (button.getCover().isListed()) BeatmapLoader.prefetch(button.getChart());
+            else actor = button.getCover();
+        }
+        if (actor instanceof MainMenuSongCover)
+        {
+            BeatmapLoader.prefetch(((MainMenuSongCover) actor).getBeatmapSet().getCharts().get(0));
+        }
+    }
+
+    /**
+     * Scroll the grid with the up and down keys. A held key repeats after
+     * a short delay.
+     */
+    private void scroll()
+    {
+        // The keys are for the key bind when it's being edited.
+        String key = null;
+        if (!KeyBindEditor.isEditing())
+        {
+            if (Greenfoot.isKeyDown("up")) key = "up";
+            else if (Greenfoot.isKeyDown("down")) key = "down";
+        }
+
+        if (key == null)
+        {
+            heldScrollKey = null;
+            return;
+        }
+
+        if (key.equals(heldScrollKey)) heldScrollActs++;
+        else
+        {
+            heldScrollKey = key;
+            heldScrollActs = 0;
+        }
+
+        boolean repeat = heldScrollActs >= SCROLL_REPEAT_DELAY &&
+                (heldScrollActs - SCROLL_REPEAT_DELAY) % SCROLL_REPEAT_INTERVAL == 0;
+        if (heldScrollActs == 0 || repeat) scrollTo(scrollRow + (key.equals("up") ? -1 : 1));
+    }
+
+    /**
+     * Scroll the grid to a row.
+     *
+     * @param row First row on the screen
+     */
+    private void scrollTo(int row)
+    {
+        row = clampRow(row);
+        if (row == scrollRow) return;
+
+        scrollRow = row;
+        updateGrid();
+    }
+
+    /**
+     * Keep a scroll row in the results.
+     *
+     * @param row First row on the screen
+     * @return Row between the first row and the last screen of rows
+     */
+    private int clampRow(int row)
+    {
+        int rows = (results.size() + Constants.SELECTION_ROWS - 1) / Constants.SELECTION_ROWS;
+        return Math.max(0, Math.min(row, rows - Constants.SELECTION_COLS));
+    }
+
+    /**
+     * Show search results in the grid.
+     *
+     * @param beatmapSets Beatmap sets
+     */
+    private void showResults(List<LibrarySet> beatmapSets)
+    {
+        results = beatmapSets;
+        scrollRow = clampRow(scrollRow);
+        updateGrid();
     }
 
     /**
@@ -74,6 +284,15 @@ public class MainMenu extends World
             getBackground().drawImage(text, x, y);
         }
         
+        // Put in the search box
+        addObject(searchBox, 0, 0);
+        searchBox.init();
+
+        // Put in the playlist button
+        PlaylistButton playlistButton = new PlaylistButton();
+        addObject(playlistButton, 0, 0);
+        playlistButton.init();
+
         // Put in Key bind editors
         {
             for (int i = 0; i < Constants.NUM_COLS; i++)
@@ -87,17 +306,54 @@ public class MainMenu extends World
 
     /**
      * Put the song selection buttons, MainMenuSongCover, in the world.
-     *
-     * @param beatmapSets Beatmap sets
+     * Only the rows on the screen are in the world, and the rows just
+     * above and below are rendered but not in the world. Covers that
+     * leave these rows are recycled for the sets that enter them, so the
+     * number of covers doesn't depend on the size of the library.
      */
-    private void putSongSelectionButtons(ArrayList<File> beatmapSets)
+    private void updateGrid()
     {
-        for (int i = 0; i < beatmapSets.size(); i++)
+        final int perRow = Constants.SELECTION_ROWS;
+        int firstVisible = scrollRow * perRow;
+        int endVisible = Math.min(results.size(), firstVisible + Constants.SELECTION_COLS * perRow);
+        int firstBound = Math.max(0, firstVisible - PREFETCH_ROWS * perRow);
+        int endBound = Math.min(results.size(), endVisible + PREFETCH_ROWS * perRow);
+
+        // Keep the covers of the sets that are still in the rows.
+        Map<LibrarySet, MainMenuSongCover> oldCovers = new IdentityHashMap<>(covers);
+        covers.clear();
+        for (int i = firstBound; i < endBound; i++)
+        {
+            MainMenuSongCover cover = oldCovers.remove(results.get(i));
+            if (cover != null) covers.put(results.get(i), cover);
+        }
+
+        // Recycle the others. (Sets that are scrolled away, removed or changed)
+        for (MainMenuSongCover cover : oldCovers.values())
+        {
+            if (cover.getWorld() != null) cover.remove();
+            spareCovers.push(cover);
+        }
+
+        for (int i = firstBound; i < endBound; i++)
         {
-            File beatmapSetDirectory = beatmapSets.get(i);
-            MainMenuSongCover songSelect = new MainMenuSongCover(beatmapSetDirectory, i);
-            addObject(songSelect, 0, 0);
-            songSelect.init();
+            LibrarySet set = results.get(i);
+            MainMenuSongCover cover = covers.get(set);
+            if (cover == null)
+            {
+                cover = spareCovers.isEmpty() ? new MainMenuSongCover() : spareCovers.pop();
+                cover.bind(set);
+                covers.put(set, cover);
+            }
+
+            boolean visible = i >= firstVisible && i < endVisible;
+            cover.setIndex(i - firstVisible);
+            if (visible && cover.getWorld() == null)
+            {
+                addObject(cover, 0, 0);
+                cover.init();
+            }
+            else if (!visible && cover.getWorld() != null) cover.remove();
         }
     }
 
@@ -5,12 +5,12 @@ import greenfoot.GreenfootImage;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
 
 /**
- * The song cover image button for the MainMenu.
+ * The song cover image button for the MainMenu. Covers are recycled by
+ * the main menu while scrolling: bind() gives a cover another beatmap set
+ * and renders it, init() puts its difficulty buttons in the world, and
+ * remove() takes it out of the world to be bound again.
  *
  * @author Team APCSA 2019
  * @author Yijie Gui
@@ -20,86 +20,83 @@ import java.util.Map;
 public class MainMenuSongCover extends Actor
 {
     /** The directory that this beatmap set is in. */
-    private final File beatmapsDir;
+    private File beatmapsDir;
 
-    /** How many other beatmap sets are before it? */
-    private final int index;
+    /** The library index entry of this beatmap set. */
+    private LibrarySet beatmapSet;
+
+    /** Position on the screen: how many other covers are before it? */
+    private int index;
 
     /** The difficulties of this beatmap-set. (Eg. Easy, Hard, etc.) */
-    private final ArrayList<String> difficulties;
+    private final ArrayList<String> difficulties = new ArrayList<>();
 
     /** The .osu files in this beatmap-set. */
-    private final ArrayList<File> beatmapFiles;
+    private final ArrayList<File> beatmapFiles = new ArrayList<>();
 
-    /** The properties of each beatmap */
-    private final ArrayList<Map<String, String>> beatmapProperties;
+    /** The metadata of each beatmap */
+    private final ArrayList<BeatmapMetadata> beatmapMetadata = new ArrayList<>();
 
     /** Is the difficulties listed or not */
     private boolean isListed = false;
 
+    /** Is the cover showing a placeholder until the thumbnail is generated? */
+    private boolean waitingForThumbnail = false;
+
     /** Difficulty selection buttons */
-    private final ArrayList<MainMenuSongDifficulty> difficultyButtons;
+    private final ArrayList<MainMenuSongDifficulty> difficultyButtons = new ArrayList<>();
 
     /**
-     * Construct a main menu song selection cover
+     * Bind the cover to a beatmap set, and render it. This can be done
+     * before the cover is in the world.
      *
-     * @param beatmapsDir Beatmap-set directory
-     * @param index How many are there before it?
+     * @param beatmapSet Beatmap-set library index entry
      */
-    public MainMenuSongCover(File beatmapsDir, int index)
+    public void bind(LibrarySet beatmapSet)
     {
-        this.beatmapsDir = beatmapsDir;
-        this.index = index;
-
-        // Get all the difficulties
-        difficulties = BeatmapReader.listDifficulties(beatmapsDir);
-
-        // Get all the beatmap files with the diffs
-        beatmapFiles = new ArrayList<>();
-        for (String difficulty : difficulties)
+        this.beatmapSet = beatmapSet;
+        this.beatmapsDir = beatmapSet.getDirectory();
+
+        // Get all the difficulties, files and properties from the index.
+        difficulties.clear();
+        beatmapFiles.clear();
+        beatmapMetadata.clear();
+        for (LibraryChart chart : beatmapSet.getCharts())
         {
-            beatmapFiles.add(BeatmapReader.findBeatmapByDifficulty(beatmapsDir, difficulty));
+            difficulties.add(chart.getDifficulty());
+            beatmapFiles.add(chart.getFile());
+            beatmapMetadata.add(chart.getMetadata());
         }
 
-        // Read all the properties.
-        beatmapProperties = new ArrayList<>();
-        for (File beatmapFile : beatmapFiles)
-        {
-            beatmapProperties.add(BeatmapReader.readProperties(beatmapFile));
-        }
-
-        // Create all the difficulty selection buttons
-        difficultyButtons = new ArrayList<>();
+        render();
     }
 
     /**
      * Render the song selection cover
      */
-    public void init()
+    private void render()
     {
         final int sideLen = Constants.SELECTION_COVER_SIDE_LENGTH;
         final int textHeight = Constants.SELECTION_COVER_TEXT_HEIGHT;
-        final int minSpacing = Constants.SELECTION_MIN_SPACING;
 
         // Create base image
         GreenfootImage image = new GreenfootImage(sideLen, sideLen);
         setImage(image);
 
-        // Draw the beatmap's wallpaper on the cover.
+        // Draw the beatmap's wallpaper on the cover. (Thumbnail from the cache, already scaled)
         {
-            // Get wallpaper image
-            List<String> fileNameList = Arrays.asList(beatmapsDir.list());
-            String backgroundSuffix = fileNameList.contains("background.jpg") ? "jpg" : "png";
-            GreenfootImage wallpaper = new GreenfootImage("../beatmaps/" +
-                    beatmapsDir.getName() + "/background." + backgroundSuffix);
-
-            // Scale it.
-            int origWidth = wallpaper.getWidth();
-            int origHeight = wallpaper.getHeight();
-            wallpaper.scale((int) (1.0 * origWidth / origHeight * sideLen), sideLen);
-
-            // Draw it
-            image.drawImage(wallpaper, 0, 0);
+            long hash = beatmapSet.getBackgroundHash();
+            GreenfootImage wallpaper = hash == 0 ? null : ThumbnailCache.load(beatmapSet.getBackground(), hash, sideLen);
+
+            if (wallpaper != null) image.drawImage(wallpaper, 0, 0);
+            else
+            {
+                // Placeholder until the thumbnail is generated
+                image.setColor(new Color(40, 40, 40));
+                image.fill();
+            }
+            // Not isPending(): the thumbnail may be done between load() and here, then it's never drawn.
+            waitingForThumbnail = wallpaper == null && hash != 0 && !ThumbnailCache.isFailed(hash, sideLen);
         }
 
         // Darken the text zone
@@ -111,7 +108,7 @@ public class MainMenuSongCover extends Actor
         // Draw text
         {
             // Get text and make an image
-            String songName = beatmapProperties.get(0).get("Title");
+            String songName = beatmapMetadata.get(0).getTitle();
             GreenfootImage text = new GreenfootImage(songName, 16, Color.WHITE, null);
 
             // Calculate the x and y that the text is centered
@@ -121,36 +118,79 @@ public class MainMenuSongCover extends Actor
             // Draw it
             image.drawImage(text, x, y);
         }
+    }
 
+    /**
+     * Put the cover at its index, and its difficulty buttons in the world.
+     * The cover must be in the world and bound to a set.
+     */
+    public void init()
+    {
         // Set location
-        {
-            // Get row and col. Simple APCSA stuff
-            int row = index / Constants.SELECTION_ROWS;
-            int col = index % Constants.SELECTION_ROWS;
-
-            // Calculate position
-            int x = minSpacing + col * (sideLen + minSpacing) + sideLen / 2;
-            int y = Constants.SELECTION_TOP_PADDING + minSpacing + row * (sideLen + minSpacing) + sideLen / 2;
-
-            // Set position
-            setLocation(x, y);
-        }
+        updateLocation();
 
         // Init difficulty selection buttons
+        isListed = false;
+        difficultyButtons.clear();
         for (int i = 0; i < difficulties.size(); i++)
         {
-            difficultyButtons.add(new MainMenuSongDifficulty(difficulties.get(i), beatmapFiles.get(i), i, this));
+            ChartStatistics statistics = beatmapSet.getCharts().get(i).getStatistics();
+            difficultyButtons.add(new MainMenuSongDifficulty(difficulties.get(i), beatmapFiles.get(i), statistics, i, this));
             getWorld().addObject(difficultyButtons.get(i), 0, 0);
             difficultyButtons.get(i).init();
         }
     }
 
     /**
-     * Act: Process clicks: Show / Hide the difficulties.
+     * Move the cover to the location of its index.
+     */
+    private void updateLocation()
+    {
+        final int sideLen = Constants.SELECTION_COVER_SIDE_LENGTH;
+        final int minSpacing = Constants.SELECTION_MIN_SPACING;
+
+        // Get row and col. Simple APCSA stuff
+        int row = index / Constants.SELECTION_ROWS;
+        int col = index % Constants.SELECTION_ROWS;
+
+        // Calculate position
+        int x = minSpacing + col * (sideLen + minSpacing) + sideLen / 2;
+        int y = Constants.SELECTION_TOP_PADDING + minSpacing + row * (sideLen + minSpacing) + sideLen / 2;
+
+        // Move the difficulty buttons with it.
+        int dx = x - getX(), dy = y - getY();
+        for (MainMenuSongDifficulty button : difficultyButtons)
+        {
+            button.setLocation(button.getX() + dx, button.getY() + dy);
+        }
+
+        // Set position
+        setLocation(x, y);
+    }
+
+    /**
+     * Remove the cover and its difficulty buttons from the world.
+     */
+    public void remove()
+    {
+        getWorld().removeObjects(difficultyButtons);
+        getWorld().removeObject(this);
+        difficultyButtons.clear();
+    }
+
+    /**
+     * Act: Process clicks: Show / Hide the difficulties. Show the thumbnail
+     * when it's generated.
      */
     @Override
     public void act()
     {
+        if (waitingForThumbnail &&
+                !ThumbnailCache.isPending(beatmapSet.getBackgroundHash(), Constants.SELECTION_COVER_SIDE_LENGTH))
+        {
+            render();
+        }
+
         if (Greenfoot.mouseClicked(this))
         {
             listDifficulties(!isListed);
@@ -177,11 +217,23 @@ public class MainMenuSongCover extends Actor
         return beatmapsDir;
     }
 
+    public LibrarySet getBeatmapSet()
+    {
+        return beatmapSet;
+    }
+
     public int getIndex()
     {
         return index;
     }
 
+    public void setIndex(int index)
+    {
+        if (this.index == index) return;
+        this.index = index;
+        if (getWorld() != null) updateLocation();
+    }
+
     public ArrayList<String> getDifficulties()
     {
         return difficulties;
@@ -192,9 +244,9 @@ public class MainMenuSongCover extends Actor
         return beatmapFiles;
     }
 
-    public ArrayList<Map<String, String>> getBeatmapProperties()
+    public ArrayList<BeatmapMetadata> getBeatmapMetadata()
     {
-        return beatmapProperties;
+        return beatmapMetadata;
     }
 
     public boolean isListed()
@@ -20,6 +20,9 @@ public class MainMenuSongDifficulty extends Actor
     /** The file of this beatmap */
     private final File beatmapFile;
 
+    /** Note statistics of this beatmap (Can be null) */
+    private final ChartStatistics statistics;
+
     /** How many difficulties are behind it? */
     private final int index;
 
@@ -30,13 +33,16 @@ public class MainMenuSongDifficulty extends Actor
      * Construct a main menu song difficulty button
      * @param name Name of this difficulty
      * @param beatmapFile File of this beatmap
+     * @param statistics Note statistics of this beatmap (Can be null)
      * @param index How many difficulties are behind it?
      * @param cover The cover containing it
      */
-    public MainMenuSongDifficulty(String name, File beatmapFile, int index, MainMenuSongCover cover)
+    public MainMenuSongDifficulty(String name, File beatmapFile, ChartStatistics statistics, int index,
+                                  MainMenuSongCover cover)
     {
         this.name = name;
         this.beatmapFile = beatmapFile;
+        this.statistics = statistics;
         this.index = index;
         this.cover = cover;
     }
@@ -63,6 +69,22 @@ public class MainMenuSongDifficulty extends Actor
             image.fillRect(0, 0, width, height);
         }
 
+        // Draw the note density over the song along the bottom
+        if (statistics != null)
+        {
+            final int points = ChartStatistics.DENSITY_POINTS;
+            final int stripHeight = height / 2;
+
+            image.setColor(new Color(80, 140, 255, (int) (255 * 0.5)));
+            for (int i = 0; i < points; i++)
+            {
+                int x = i * width / points;
+                int barWidth = (i + 1) * width / points - x;
+                int barHeight = (int) Math.round(statistics.getDensity(i) * stripHeight);
+                image.fillRect(x, height - barHeight, barWidth, barHeight);
+            }
+        }
+
         // Draw text
         {
             // Get text and make an image
@@ -99,7 +121,7 @@ public class MainMenuSongDifficulty extends Actor
     }
 
     /**
-     * Act: Launch the beatmap
+     * Act: Launch the beatmap, or add it to the playlist with shift
      */
     @Override
     public void act()
@@ -110,13 +132,8 @@ public class MainMenuSongDifficulty extends Actor
             // means that it is still there when it is hidden, which means if
             // it is clicked, the user meant to click the cover under it.
             if (!cover.isListed()) cover.listDifficulties(true);
-            else
-            {
-                BeatmapWorld world = new BeatmapWorld(BeatmapReader.read(beatmapFile));
-                Greenfoot.setWorld(world);
-                world.startGame();
-                System.gc();
-            }
+            else if (Greenfoot.isKeyDown("shift")) Playlist.add(getChart());
+            else Greenfoot.setWorld(new LoadingWorld((MainMenu) getWorld(), getChart()));
         }
     }
 
@@ -134,8 +151,23 @@ public class MainMenuSongDifficulty extends Actor
         return beatmapFile;
     }
 
+    public ChartStatistics getStatistics()
+    {
+        return statistics;
+    }
+
     public int getIndex()
     {
         return index;
     }
+
+    public MainMenuSongCover getCover()
+    {
+        return cover;
+    }
+
+    public LibraryChart getChart()
+    {
+        return cover.getBeatmapSet().getCharts().get(index);
+    }
 }
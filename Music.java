@@ -0,0 +1,39 @@
+/**
+ * The music of a beatmap. It's played from the start when the game
+ * starts, and stopped when the game is retried or left.
+ *
+ * @author agent
+ * @since 2026-10-18 04:55
+ */
+public interface Music
+{
+    /**
+     * Get ready to play (Eg. open the audio device), so play() starts
+     * right away. It's called when the game is about to start, instead of
+     * when the music is created, so music that is never played doesn't
+     * hold the device.
+     */
+    void cue();
+
+    /**
+     * Start playing. (From the start, or from where it was stopped if it
+     * was never stopped)
+     */
+    void play();
+
+    /**
+     * Stop playing, and rewind to the start.
+     */
+    void stop();
+
+    /**
+     * Stop playing and release the audio device and the file. It can't
+     * be played again.
+     */
+    void close();
+
+    /**
+     * @return Is playing or not.
+     */
+    boolean isPlaying();
+}
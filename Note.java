@@ -17,8 +17,15 @@ public class Note extends Actor
     private final int startTime;
     private final int hitTime;
     private final int column;
-    
-    private final long startTimeSystem;
+
+    /** Scroll timeline of the beatmap */
+    private final ScrollTimeline timeline;
+
+    /** Game timer */
+    private final TimingController timer;
+
+    /** Scroll position of the hit time, calculated once. */
+    private final double hitPosition;
 
     // Init note textures when this class is accessed for the first time.
     static
@@ -31,14 +38,17 @@ public class Note extends Actor
      *
      * @param hitTime The in-game time that the note is hit.
      * @param column The column number.
+     * @param timeline Scroll timeline of the beatmap.
+     * @param timer Game timer.
      */
-    public Note(int hitTime, int column)
+    public Note(int hitTime, int column, ScrollTimeline timeline, TimingController timer)
     {
         this.startTime = hitTime - Constants.GAME_SPEED_MS;
         this.hitTime = hitTime;
         this.column = column;
-
-        this.startTimeSystem = System.currentTimeMillis();
+        this.timeline = timeline;
+        this.timer = timer;
+        this.hitPosition = timeline.positionAt(hitTime);
 
         setImage(Images.NOTES[column]);
     }
@@ -47,10 +57,12 @@ public class Note extends Actor
      * Construct a Note actor with Note info.
      *
      * @param noteInfo Note information
+     * @param timeline Scroll timeline of the beatmap.
+     * @param timer Game timer.
      */
-    public Note(NoteInformation noteInfo)
+    public Note(NoteInformation noteInfo, ScrollTimeline timeline, TimingController timer)
     {
-        this(noteInfo.getTime(), noteInfo.getColumn());
+        this(noteInfo.getTime(), noteInfo.getColumn(), timeline, timer);
     }
 
     /**
@@ -58,10 +70,8 @@ public class Note extends Actor
      */
     public void act()
     {
-        int elapseTime = (int) (System.currentTimeMillis() - startTimeSystem);
-
         // Fall to the correct location.
-        setLocation(getX(), (int) Math.round((double) elapseTime / Constants.GAME_SPEED_MS * Constants.GRAPHIC_NOTE_LANDING));
+        setLocation(getX(), calculateY());
     }
 
     /**
@@ -71,7 +81,21 @@ public class Note extends Actor
     {
         // Initialize position
         int x = Constants.GRAPHIC_COL_OFFSET + NOTE_WIDTH * column;
-        setLocation(x, 0);
+        setLocation(x, calculateY());
+    }
+
+    /**
+     * Calculate the y of the note with the scroll positions. The distance
+     * to the landing line is the scroll distance between now and the hit
+     * time, so the note slows down and speeds up with the SV changes.
+     *
+     * @return Y
+     */
+    private int calculateY()
+    {
+        double position = timeline.positionAt(timer.getTotalDuration() - Constants.GAME_SPAWNING_OFFSET);
+        double distance = (hitPosition - position) / Constants.GAME_SPEED_MS;
+        return (int) Math.round(Constants.GRAPHIC_NOTE_LANDING - distance * Constants.GRAPHIC_NOTE_LANDING);
     }
 
     /**
@@ -0,0 +1,56 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The osu!mania .osu chart format. Each .osu file is one difficulty, and
+ * the difficulty name is the last "[...]" in the file name.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+public class OsuChartFormat implements ChartFormat
+{
+    @Override
+    public boolean accepts(File file)
+    {
+        return file.getName().toLowerCase().endsWith(".osu");
+    }
+
+    @Override
+    public boolean isSingleChart()
+    {
+        return true;
+    }
+
+    @Override
+    public List<String> listDifficulties(File file)
+    {
+        // Find the last set of "[]".
+        String[] split = file.getName().split("\\[");
+        return Collections.singletonList(split[split.length - 1].split("\\]")[0]);
+    }
+
+    @Override
+    public ChartData read(File file, String difficulty, boolean headerOnly) throws IOException
+    {
+        ChartData chart;
+
+        if (!headerOnly && !BeatmapFiles.isInArchive(file) && file.length() >= BeatmapParser.PARALLEL_THRESHOLD)
+        {
+            chart = BeatmapParser.parseParallel(file);
+        }
+        else try (InputStream in = BeatmapFiles.open(file))
+        {
+            chart = BeatmapParser.parse(in, headerOnly);
+        }
+
+        // Make sure mode is mania.
+        if (!headerOnly && !"3".equals(chart.getProperties().get("Mode")))
+            throw new RuntimeException("Error: This beatmap is not mania.");
+
+        return chart;
+    }
+}
@@ -0,0 +1,400 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class imports .osz beatmap archives (zip files) into the beatmaps
+ * directory, in the "<id> <Artist> - <Title>" layout that BeatmapReader
+ * expects. The archives are streamed entry by entry, several archives are
+ * imported in parallel, and every chart is validated and compiled into
+ * ChartCache as soon as its set is imported.
+ *
+ * Archives can be dropped into Constants.IMPORT_DIRECTORY (imported in the
+ * background when the main menu opens, or when the LibraryWatcher sees new
+ * archives in it while the game runs, and the watcher adds the new sets to
+ * the menu), or passed on the command line:
+ *   java OszImporter a.osz b.osz ...
+ *
+ * @author agent
+ * @since 2026-10-18 04:25
+ */
+@SuppressWarnings("WeakerAccess")
+public class OszImporter
+{
+    /** How many archives are imported at the same time */
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Characters that can't be in a folder name */
+    private static final String ILLEGAL_CHARACTERS = "[\\\\/:*?\"<>|]";
+
+    /** Background import thread */
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "Osz importer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /** Is a background import waiting to start? (One can wait while another one runs) */
+    private static final AtomicBoolean IMPORT_WAITING = new AtomicBoolean(false);
+
+    /** Lock for moving sets into place, so two archives of the same set don't both create its directory */
+    private static final Object MOVE_LOCK = new Object();
+
+    /**
+     * Import the archives in the arguments, or the import directory if
+     * there are no arguments.
+     *
+     * @param args Paths of .osz files
+     */
+    public static void main(String[] args)
+    {
+        if (args.length == 0) importFolder();
+        else
+        {
+            List<File> archives = new ArrayList<>();
+            for (String arg : args) archives.add(new File(arg));
+            importAll(archives, false);
+        }
+    }
+
+    /**
+     * Import the import directory on the background thread, so the game
+     * doesn't wait for the archives to be extracted. It's skipped if an
+     * import is already waiting, since that one sees the same archives.
+     */
+    public static void importFolderInBackground()
+    {
+        if (!IMPORT_WAITING.compareAndSet(false, true)) return;
+
+        BACKGROUND.execute(() ->
+        {
+            IMPORT_WAITING.set(false);
+            importFolder();
+        });
+    }
+
+    /**
+     * Import every .osz archive in the import directory. Imported archives
+     * are deleted, and the ones that failed are renamed to ".osz.failed"
+     * so that they are not tried again.
+     *
+     * @return Imported beatmap set directories
+     */
+    public static List<File> importFolder()
+    {
+        if (!Constants.IMPORT_DIRECTORY.isDirectory()) Constants.IMPORT_DIRECTORY.mkdirs();
+
+        File[] archives = Constants.IMPORT_DIRECTORY.listFiles((dir, name) -> name.toLowerCase().endsWith(".osz"));
+        if (archives == null || archives.length == 0) return new ArrayList<>();
+
+        Arrays.sort(archives);
+        return importAll(Arrays.asList(archives), true);
+    }
+
+    /**
+     * Import archives in parallel.
+     *
+     * @param archives The .osz files
+     * @param removeArchives Remove the archives after importing or not
+     * @return Imported beatmap set directories, in the order of the archives
+     */
+    public static List<File> importAll(List<File> archives, boolean removeArchives)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<File>> futures = new ArrayList<>();
+
+        for (File archive : archives)
+        {
+            futures.add(pool.submit(() ->
+            {
+                File beatmapSet = importArchive(archive);
+                if (removeArchives) Files.delete(archive.toPath());
+                return beatmapSet;
+            }));
+        }
+        pool.shutdown();
+
+        // Collect results. One broken archive should not stop the others.
+        List<File> imported = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                imported.add(futures.get(i).get());
+            }
+            catch (ExecutionException e)
+            {
+                e.printStackTrace();
+                if (removeArchives)
+                {
+                    File archive = archives.get(i);
+                    archive.renameTo(new File(archive.getParentFile(), archive.getName() + ".failed"));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                break;
+            }
+        }
+
+        return imported;
+    }
+
+    /**
+     * Import one archive. It is extracted into a temporary directory
+     * first, so that a broken archive never leaves a half imported set.
+     *
+     * @param archive The .osz file
+     * @return Imported beatmap set directory
+     * @throws IOException Read error, or the archive has no playable charts.
+     */
+    public static File importArchive(File archive) throws IOException
+    {
+        if (!Constants.BEATMAP_DIRECTORY.isDirectory()) Constants.BEATMAP_DIRECTORY.mkdirs();
+        File temp = Files.createTempDirectory(Constants.BEATMAP_DIRECTORY.toPath(), ".import-").toFile();
+
+        try
+        {
+            extract(archive, temp);
+
+            // Validate charts, and get the properties of the set.
+            Map<String, String> properties = validateCharts(temp);
+            if (properties == null) throw new IOException("Error: " + archive.getName() + " has no playable charts.");
+
+            // Copy the background to where the game looks for it.
+            copyBackground(temp, properties.get("Background"));
+
+            // Move the set into place (Only renames, so waiting for the other imports is short)
+            File beatmapSet = new File(Constants.BEATMAP_DIRECTORY, getDirectoryName(archive, properties));
+            synchronized (MOVE_LOCK)
+            {
+                moveInto(temp, beatmapSet);
+            }
+
+            // Compile the charts so that they load fast the first time.
+            compileCharts(beatmapSet);
+
+            return beatmapSet;
+        }
+        finally
+        {
+            if (temp.exists()) deleteRecursively(temp);
+        }
+    }
+
+    /**
+     * Extract a zip archive by streaming its entries.
+     *
+     * @param archive Zip archive
+     * @param directory Directory to extract into
+     * @throws IOException Read or write error, or an entry is outside the directory.
+     */
+    private static void extract(File archive, File directory) throws IOException
+    {
+        Path root = directory.toPath().toAbsolutePath().normalize();
+
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(archive), 64 * 1024)))
+        {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null)
+            {
+                // Entries like "../../file" must not escape the directory.
+                Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root) || target.equals(root))
+                    throw new IOException("Error: Illegal entry in archive: " + entry.getName());
+
+                if (entry.isDirectory())
+                {
+                    Files.createDirectories(target);
+                }
+                else
+                {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(zip, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Validate the charts in an extracted set. Chart files without any
+     * playable difficulty (Eg. osu!standard difficulties in a mania set)
+     * are deleted.
+     *
+     * @param directory Extracted set
+     * @return Properties of the first playable chart, or null if there are none.
+     * @throws IOException File read error
+     */
+    private static Map<String, String> validateCharts(File directory) throws IOException
+    {
+        File[] files = directory.listFiles();
+        if (files == null) return null;
+        Arrays.sort(files);
+
+        Map<String, String> first = null;
+        for (File file : files)
+        {
+            ChartFormat format = ChartFormats.find(file);
+            if (format == null || !file.isFile()) continue;
+
+            boolean playable = false;
+            for (String difficulty : format.listDifficulties(file))
+            {
+                try
+                {
+                    Map<String, String> properties = format.read(file, difficulty, true).getProperties();
+                    BeatmapReader.validateProperties(properties);
+                    if (first == null) first = properties;
+                    playable = true;
+                }
+                catch (RuntimeException e)
+                {
+                    // Not playable, check the next one.
+                }
+            }
+
+            if (!playable) Files.delete(file.toPath());
+        }
+
+        return first;
+    }
+
+    /**
+     * Copy the background image of the charts to "background.jpg" or
+     * "background.png", unless the set already has one that
+     * BeatmapReader.findBackground() can find.
+     *
+     * @param directory Extracted set
+     * @param background File name of the background in the charts (Can be null)
+     * @throws IOException File write error
+     */
+    private static void copyBackground(File directory, String background) throws IOException
+    {
+        if (BeatmapReader.findBackground(directory) != null || background == null) return;
+
+        File source = new File(directory, background);
+        String name = source.getName().toLowerCase();
+        String suffix = name.endsWith(".png") ? "png" : name.endsWith(".jpg") || name.endsWith(".jpeg") ? "jpg" : null;
+        if (suffix == null || !source.isFile()) return;
+
+        Files.copy(source.toPath(), new File(directory, "background." + suffix).toPath());
+    }
+
+    /**
+     * Get the directory name of a set: "<id> <Artist> - <Title>". The id
+     * is the number at the start of the archive name (Eg. "398366 deadmau5
+     * - Orange File.osz"), or the BeatmapSetID in the charts.
+     *
+     * @param archive The .osz file
+     * @param properties Properties of a chart in the set
+     * @return Directory name
+     */
+    private static String getDirectoryName(File archive, Map<String, String> properties)
+    {
+        String id = archive.getName().split("[^0-9]", 2)[0];
+        if (id.isEmpty()) id = properties.getOrDefault("BeatmapSetID", "");
+        if (id.startsWith("-")) id = "";
+
+        String name = properties.getOrDefault("Artist", "Unknown") + " - " + properties.getOrDefault("Title", "Unknown");
+        if (!id.isEmpty()) name = id + " " + name;
+
+        return name.replaceAll(ILLEGAL_CHARACTERS, "_").trim();
+    }
+
+    /**
+     * Move an extracted set into its directory. If the set is already
+     * imported, the files are replaced.
+     *
+     * @param source Extracted set
+     * @param target Beatmap set directory
+     * @throws IOException File write error
+     */
+    private static void moveInto(File source, File target) throws IOException
+    {
+        if (!target.exists())
+        {
+            Files.move(source.toPath(), target.toPath());
+            return;
+        }
+
+        File[] files = source.listFiles();
+        if (files == null) return;
+
+        for (File file : files)
+        {
+            File destination = new File(target, file.getName());
+            if (file.isDirectory() && destination.isDirectory()) moveInto(file, destination);
+            else Files.move(file.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Compile every chart of a set into ChartCache.
+     *
+     * @param beatmapSet Beatmap set directory
+     */
+    private static void compileCharts(File beatmapSet)
+    {
+        File[] files = beatmapSet.listFiles();
+        if (files == null) return;
+
+        for (File file : files)
+        {
+            ChartFormat format = ChartFormats.find(file);
+            if (format == null || !file.isFile()) continue;
+
+            try
+            {
+                long hash = ContentHash.hash(file);
+                for (String difficulty : format.listDifficulties(file))
+                {
+                    ChartCache.load(file, difficulty, hash);
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // The chart is compiled again when it's played.
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Delete a file or a directory with everything in it.
+     *
+     * @param file File or directory
+     * @throws IOException File delete error
+     */
+    private static void deleteRecursively(File file) throws IOException
+    {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+            for (File child : files)
+            {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
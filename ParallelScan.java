@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * A bounded thread pool for the library scans. Reading sets from the disk
+ * is mostly waiting for I/O, so the pool has more threads than cores, but
+ * it is still bounded so a big library can't open thousands of files at
+ * the same time.
+ *
+ * @author agent
+ * @since 2026-10-18 04:29
+ */
+@SuppressWarnings("WeakerAccess")
+public class ParallelScan
+{
+    /** Number of threads */
+    private static final int THREADS = Math.min(16, Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    /** The pool (Daemon threads, so they don't keep the game running) */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, runnable ->
+    {
+        Thread thread = new Thread(runnable, "Library scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Run a task on every item in parallel. The results are in the same
+     * order as the items, no matter which task finishes first.
+     *
+     * @param items Items
+     * @param task Task
+     * @param <T> Item type
+     * @param <R> Result type
+     * @return Results, in the order of the items
+     */
+    public static <T, R> List<R> map(List<T> items, Function<T, R> task)
+    {
+        List<R> results = new ArrayList<>(items.size());
+
+        // Not worth it for one item
+        if (items.size() <= 1)
+        {
+            for (T item : items) results.add(task.apply(item));
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items)
+        {
+            futures.add(POOL.submit(() -> task.apply(item)));
+        }
+
+        try
+        {
+            for (Future<R> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch (ExecutionException e)
+        {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error: Scan interrupted.", e);
+        }
+
+        return results;
+    }
+}
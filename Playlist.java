@@ -0,0 +1,59 @@
+import java.util.ArrayDeque;
+
+/**
+ * The playlist of charts to play back to back. Charts are queued in the
+ * song select (Shift + click a difficulty), and while one is playing the
+ * BeatmapController loads the next one in the background, so the next
+ * game starts as soon as the last note of this one is done.
+ *
+ * @author agent
+ * @since 2026-10-18 04:51
+ */
+@SuppressWarnings("WeakerAccess")
+public class Playlist
+{
+    /** Charts that are not played yet, in order */
+    private static final ArrayDeque<LibraryChart> QUEUE = new ArrayDeque<>();
+
+    /**
+     * Add a chart to the end of the playlist.
+     *
+     * @param chart Library chart
+     */
+    public static void add(LibraryChart chart)
+    {
+        QUEUE.add(chart);
+    }
+
+    /**
+     * Take the next chart out of the playlist.
+     *
+     * @return Next chart (Null if the playlist is empty)
+     */
+    public static LibraryChart poll()
+    {
+        return QUEUE.poll();
+    }
+
+    /**
+     * Remove all the charts.
+     */
+    public static void clear()
+    {
+        QUEUE.clear();
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public static int size()
+    {
+        return QUEUE.size();
+    }
+
+    public static boolean isEmpty()
+    {
+        return QUEUE.isEmpty();
+    }
+}
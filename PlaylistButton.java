@@ -0,0 +1,74 @@
+import greenfoot.Actor;
+import greenfoot.Color;
+import greenfoot.Greenfoot;
+import greenfoot.GreenfootImage;
+
+/**
+ * The playlist button in the main menu. It shows how many charts are in
+ * the playlist. Clicking it plays them, and right clicking it clears
+ * them.
+ *
+ * @author agent
+ * @since 2026-10-18 04:51
+ */
+@SuppressWarnings("WeakerAccess")
+public class PlaylistButton extends Actor
+{
+    /** Width */
+    private static final int WIDTH = 260;
+
+    /** Height */
+    private static final int HEIGHT = 26;
+
+    /** Playlist size that the image is showing */
+    private int shownSize = -1;
+
+    /**
+     * Initialize the image and position
+     */
+    public void init()
+    {
+        int x = Constants.SELECTION_MIN_SPACING + WIDTH / 2;
+        int y = (Constants.SELECTION_TOP_PADDING + Constants.SELECTION_MIN_SPACING) / 2;
+        setLocation(x, y);
+
+        updateImage();
+    }
+
+    /**
+     * Update Image, if the playlist size changed.
+     */
+    private void updateImage()
+    {
+        if (Playlist.size() == shownSize) return;
+        shownSize = Playlist.size();
+
+        GreenfootImage image = new GreenfootImage(WIDTH, HEIGHT);
+
+        // Background
+        image.setColor(new Color(255, 255, 255, (int) (255 * 0.75)));
+        image.fill();
+
+        // Text
+        String text = shownSize == 0 ? "Playlist: Shift + click to add" : "Play playlist (" + shownSize + " charts)";
+        GreenfootImage textImage = new GreenfootImage(text, 16, shownSize == 0 ? Color.GRAY : Color.BLACK, null);
+        image.drawImage(textImage, WIDTH / 2 - textImage.getWidth() / 2, HEIGHT / 2 - textImage.getHeight() / 2);
+
+        setImage(image);
+    }
+
+    /**
+     * Act: Play or clear the playlist when it's clicked.
+     */
+    @Override
+    public void act()
+    {
+        if (Greenfoot.mouseClicked(this) && !Playlist.isEmpty())
+        {
+            if (Greenfoot.getMouseInfo().getButton() == 3) Playlist.clear();
+            else Greenfoot.setWorld(new LoadingWorld((MainMenu) getWorld(), Playlist.poll()));
+        }
+
+        updateImage();
+    }
+}
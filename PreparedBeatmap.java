@@ -0,0 +1,45 @@
+import greenfoot.GreenfootImage;
+
+/**
+ * A beatmap that is ready to be played: the notes, the music and the
+ * gameplay background are loaded, so BeatmapWorld doesn't have to read
+ * anything from the disk.
+ *
+ * @author agent
+ * @since 2026-10-18 04:48
+ */
+@SuppressWarnings("WeakerAccess")
+public final class PreparedBeatmap
+{
+    /** Beatmap with the notes and the music */
+    private final Beatmap beatmap;
+
+    /** Background at the size of the world (Null if it's not loaded or there's none) */
+    private final GreenfootImage background;
+
+    /**
+     * Construct a prepared beatmap.
+     *
+     * @param beatmap Beatmap
+     * @param background Background at the size of the world (Null = read it when it's drawn)
+     */
+    public PreparedBeatmap(Beatmap beatmap, GreenfootImage background)
+    {
+        this.beatmap = beatmap;
+        this.background = background;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public Beatmap getBeatmap()
+    {
+        return beatmap;
+    }
+
+    public GreenfootImage getBackground()
+    {
+        return background;
+    }
+}
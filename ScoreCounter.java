@@ -1,5 +1,7 @@
 import greenfoot.World;
 
+import java.util.Arrays;
+
 /**
  * This score counter class keeps the scores. It contains ScoreDisplayer
  * that displays the score on the screen.
@@ -105,6 +107,28 @@ public class ScoreCounter
         comboDisplayer.init();
     }
 
+    /**
+     * Reset the scores to the start of the beatmap, and put the
+     * displayers back in the world. (The score report removes some of
+     * them)
+     *
+     * @param world World object
+     */
+    public void reset(World world)
+    {
+        Arrays.fill(scores, 0);
+        Arrays.fill(scoresHitOrder, 0);
+        noteIndex = 0;
+        totalScore = 0;
+        bonus = 100;
+        combo = 0;
+        maxCombo = 0;
+
+        world.removeObjects(Arrays.asList(accuracyDisplayer, bonusDisplayer, totalDisplayer, comboDisplayer));
+        initDisplayers(world);
+        comboDisplayer.update(0);
+    }
+
     /**
      * Update image for all the displayers.
      */
@@ -3,6 +3,9 @@ import greenfoot.Actor;
 import greenfoot.Color;
 import greenfoot.GreenfootImage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This screen displays the final score.
  *
@@ -27,6 +30,9 @@ public class ScoreReport extends Actor
     /** Scores */
     private final ScoreCounter counter;
 
+    /** Number displayers that the report put in the world */
+    private final List<Actor> numbers = new ArrayList<>();
+
     /**
      * Constructor for objects of class ScoreReport.
      *
@@ -96,6 +102,7 @@ public class ScoreReport extends Actor
             // Draw number
             NumberDisplayer number = new NumberDisplayer();
             getWorld().addObject(number, 0, 0);
+            numbers.add(number);
             number.init(Constants.WIDTH / 2 - 40, y + hitScore.getHeight() / 2);
             number.drawNumber(hitCount);
         }
@@ -104,6 +111,7 @@ public class ScoreReport extends Actor
         {
             ScoreDisplayerAccuracy number = new ScoreDisplayerAccuracy();
             getWorld().addObject(number, 0, 0);
+            numbers.add(number);
             number.init(Constants.WIDTH / 2 - 40, Constants.HEIGHT - 100);
             number.update(accuracy);
         }
@@ -112,8 +120,19 @@ public class ScoreReport extends Actor
         {
             ScoreDisplayerTotal number = new ScoreDisplayerTotal();
             getWorld().addObject(number, 0, 0);
+            numbers.add(number);
             number.init(Constants.WIDTH / 2 - 40, Constants.HEIGHT - 200);
             number.update((int) Math.round(counter.getTotalScore()));
         }
     }
+
+    /**
+     * Remove the report and its numbers from the world.
+     */
+    public void remove()
+    {
+        getWorld().removeObjects(numbers);
+        getWorld().removeObject(this);
+        numbers.clear();
+    }
 }
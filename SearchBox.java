@@ -0,0 +1,136 @@
+import greenfoot.Actor;
+import greenfoot.Color;
+import greenfoot.Greenfoot;
+import greenfoot.GreenfootImage;
+
+/**
+ * The search box in the main menu. Typing filters the songs, backspace
+ * deletes, escape clears, and tab (or clicking the box) changes how the
+ * songs are sorted.
+ *
+ * @author agent
+ * @since 2026-10-18 04:35
+ */
+@SuppressWarnings("WeakerAccess")
+public class SearchBox extends Actor
+{
+    /** Width */
+    private static final int WIDTH = 420;
+
+    /** Height */
+    private static final int HEIGHT = 26;
+
+    /** Longest query */
+    private static final int MAX_LENGTH = 40;
+
+    /** Search query */
+    private String query = "";
+
+    /** Sort key */
+    private LibrarySearch.SortKey sortKey = LibrarySearch.SortKey.TITLE;
+
+    /** Is the query or sort key changed since the last pollChanged() */
+    private boolean changed = false;
+
+    /**
+     * Initialize the image and position
+     */
+    public void init()
+    {
+        int x = Constants.WIDTH - Constants.SELECTION_MIN_SPACING - WIDTH / 2;
+        int y = (Constants.SELECTION_TOP_PADDING + Constants.SELECTION_MIN_SPACING) / 2;
+        setLocation(x, y);
+
+        updateImage();
+    }
+
+    /**
+     * Update Image
+     */
+    private void updateImage()
+    {
+        GreenfootImage image = new GreenfootImage(WIDTH, HEIGHT);
+
+        // Background
+        image.setColor(new Color(255, 255, 255, (int) (255 * 0.75)));
+        image.fill();
+
+        // Query (Or a hint) on the left, sort key on the right
+        String text = query.isEmpty() ? "Type to search..." : query + "_";
+        GreenfootImage textImage = new GreenfootImage(text, 16, query.isEmpty() ? Color.GRAY : Color.BLACK, null);
+        image.drawImage(textImage, 8, HEIGHT / 2 - textImage.getHeight() / 2);
+
+        GreenfootImage sortImage = new GreenfootImage("Sort: " + sortKey.getDisplayName() + " (Tab)", 14, Color.DARK_GRAY, null);
+        image.drawImage(sortImage, WIDTH - 8 - sortImage.getWidth(), HEIGHT / 2 - sortImage.getHeight() / 2);
+
+        setImage(image);
+    }
+
+    /**
+     * Act: Read the typed keys.
+     */
+    @Override
+    public void act()
+    {
+        if (Greenfoot.mouseClicked(this)) changeSortKey();
+
+        // The keys are for the key bind when it's being edited.
+        if (KeyBindEditor.isEditing()) return;
+
+        String key = Greenfoot.getKey();
+        if (key == null) return;
+
+        if ("backspace".equals(key))
+        {
+            if (!query.isEmpty()) setQuery(query.substring(0, query.length() - 1));
+        }
+        else if ("escape".equals(key)) setQuery("");
+        else if ("tab".equals(key)) changeSortKey();
+        else if ("space".equals(key)) setQuery(query + " ");
+        else if (key.length() == 1 && query.length() < MAX_LENGTH) setQuery(query + key);
+    }
+
+    /**
+     * Change to the next sort key.
+     */
+    private void changeSortKey()
+    {
+        sortKey = sortKey.next();
+        changed = true;
+        updateImage();
+    }
+
+    /**
+     * Check if the query or the sort key is changed, and reset it.
+     *
+     * @return Changed or not
+     */
+    public boolean pollChanged()
+    {
+        boolean result = changed;
+        changed = false;
+        return result;
+    }
+
+    // ###################
+    // Getters and Setters
+    // ###################
+
+    public String getQuery()
+    {
+        return query;
+    }
+
+    public void setQuery(String query)
+    {
+        if (query.equals(this.query)) return;
+        this.query = query;
+        changed = true;
+        updateImage();
+    }
+
+    public LibrarySearch.SortKey getSortKey()
+    {
+        return sortKey;
+    }
+}
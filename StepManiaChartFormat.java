@@ -0,0 +1,337 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The StepMania .sm and .ssc chart formats. One file contains all the
+ * difficulties of a song, and only the "dance-single" (4 panel) charts
+ * can be played. The difficulty names are "Difficulty Meter", like
+ * "Hard 9".
+ *
+ * Stops are applied to the note times, warps (negative BPMs) and the
+ * other gimmicks of .ssc are not supported.
+ *
+ * @author agent
+ * @since 2026-10-18 04:24
+ */
+public class StepManiaChartFormat implements ChartFormat
+{
+    /** Key count of a dance-single chart */
+    private static final int KEY_COUNT = 4;
+
+    /** OverallDifficulty of StepMania's default judge (J4) */
+    private static final String OVERALL_DIFFICULTY = "8";
+
+    @Override
+    public boolean accepts(File file)
+    {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".sm") || name.endsWith(".ssc");
+    }
+
+    @Override
+    public boolean isSingleChart()
+    {
+        return false;
+    }
+
+    @Override
+    public List<String> listDifficulties(File file) throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        for (Chart chart : readCharts(readTags(file)))
+        {
+            names.add(chart.name);
+        }
+        return names;
+    }
+
+    @Override
+    public ChartData read(File file, String difficulty, boolean headerOnly) throws IOException
+    {
+        List<String[]> tags = readTags(file);
+        List<Chart> charts = readCharts(tags);
+
+        // Find the chart
+        Chart chart = null;
+        for (Chart c : charts)
+        {
+            if (difficulty == null || c.name.equalsIgnoreCase(difficulty))
+            {
+                chart = c;
+                break;
+            }
+        }
+        if (chart == null) throw new RuntimeException("Error: This beatmap does not have a dance-single chart.");
+
+        // Song properties (Normalized to osu! keys)
+        Map<String, String> song = new HashMap<>();
+        for (String[] tag : tags)
+        {
+            if (tag[0].equals("NOTEDATA")) break;
+            song.put(tag[0], tag[1].trim());
+        }
+
+        Map<String, String> properties = new HashMap<>();
+        putIfPresent(properties, "Title", song.containsKey("TITLETRANSLIT") ? song.get("TITLETRANSLIT") : song.get("TITLE"));
+        putIfPresent(properties, "TitleUnicode", song.get("TITLE"));
+        putIfPresent(properties, "Artist", song.containsKey("ARTISTTRANSLIT") ? song.get("ARTISTTRANSLIT") : song.get("ARTIST"));
+        putIfPresent(properties, "ArtistUnicode", song.get("ARTIST"));
+        putIfPresent(properties, "Creator", chart.credit != null ? chart.credit : song.get("CREDIT"));
+        putIfPresent(properties, "Tags", song.get("GENRE"));
+        putIfPresent(properties, "AudioFilename", song.get("MUSIC"));
+        putIfPresent(properties, "Background", song.get("BACKGROUND"));
+        if (song.containsKey("SAMPLESTART"))
+        {
+            properties.put("PreviewTime", "" + Math.round(parseNumber(song.get("SAMPLESTART")) * 1000));
+        }
+        properties.put("Version", chart.name);
+        properties.put("Mode", "3");
+        properties.put("CircleSize", "" + KEY_COUNT);
+        properties.put("OverallDifficulty", OVERALL_DIFFICULTY);
+
+        // Timing (.ssc charts can have their own timing)
+        String offset = chart.offset != null ? chart.offset : song.get("OFFSET");
+        BeatTiming timing = new BeatTiming(offset == null ? 0 : -parseNumber(offset) * 1000);
+        for (double[] pair : parsePairs(chart.bpms != null ? chart.bpms : song.get("BPMS")))
+        {
+            timing.addBpm(pair[0], pair[1]);
+        }
+        for (double[] pair : parsePairs(chart.stops != null ? chart.stops : song.get("STOPS")))
+        {
+            timing.addStop(pair[0], pair[1] * 1000);
+        }
+
+        int[] timingTimes = new int[timing.getBpmCount()];
+        double[] beatLengths = new double[timingTimes.length];
+        boolean[] uninherited = new boolean[timingTimes.length];
+        timing.toTimingPoints(timingTimes, beatLengths);
+        Arrays.fill(uninherited, true);
+
+        // Notes
+        IntList[] notes = new IntList[KEY_COUNT];
+        for (int i = 0; i < notes.length; i++)
+        {
+            notes[i] = new IntList();
+        }
+        if (!headerOnly) readNotes(chart.notes, timing, notes);
+
+        IntBuffer[] noteTimes = new IntBuffer[KEY_COUNT];
+        for (int i = 0; i < notes.length; i++)
+        {
+            noteTimes[i] = IntBuffer.wrap(notes[i].toSortedArray());
+        }
+
+        return new ChartData(properties, noteTimes, timingTimes, beatLengths, uninherited);
+    }
+
+    /**
+     * Read the note data of a chart. The data is a list of measures split
+     * by ",", and each measure has rows evenly spread over 4 beats.
+     *
+     * @param data Note data
+     * @param timing Beat timing
+     * @param notes Output: note times of each column
+     */
+    private static void readNotes(String data, BeatTiming timing, IntList[] notes)
+    {
+        String[] measures = data.split(",");
+
+        for (int m = 0; m < measures.length; m++)
+        {
+            // Rows of the measure
+            List<String> rows = new ArrayList<>();
+            for (String row : measures[m].split("\n"))
+            {
+                row = row.trim();
+                if (!row.isEmpty()) rows.add(row);
+            }
+
+            for (int r = 0; r < rows.size(); r++)
+            {
+                String row = rows.get(r);
+                double beat = m * 4 + 4.0 * r / rows.size();
+
+                for (int col = 0; col < Math.min(KEY_COUNT, row.length()); col++)
+                {
+                    // 1 = Tap, 2 = Hold head, 4 = Roll head
+                    char c = row.charAt(col);
+                    if (c == '1' || c == '2' || c == '4')
+                    {
+                        notes[col].add((int) Math.round(timing.timeAt(beat)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the "#TAG:value;" tags of a file, in order. Comments are removed.
+     *
+     * @param file File
+     * @return List of {TAG (upper case), value}
+     * @throws IOException File read error
+     */
+    private static List<String[]> readTags(File file) throws IOException
+    {
+        String text = new String(BeatmapFiles.readAllBytes(file), StandardCharsets.UTF_8);
+        text = text.replaceAll("//[^\n]*", "").replace("\r", "");
+
+        List<String[]> tags = new ArrayList<>();
+        int i = text.indexOf('#');
+
+        while (i >= 0 && i < text.length())
+        {
+            int colon = text.indexOf(':', i);
+            if (colon < 0) break;
+
+            // The value ends at ";", or at the next tag if the ";" is missing.
+            int end = text.indexOf(';', colon);
+            int nextTag = text.indexOf("\n#", colon);
+            if (end < 0 || (nextTag >= 0 && nextTag < end)) end = nextTag < 0 ? text.length() : nextTag;
+
+            tags.add(new String[]{text.substring(i + 1, colon).trim().toUpperCase(), text.substring(colon + 1, end)});
+            i = text.indexOf('#', end);
+        }
+
+        return tags;
+    }
+
+    /**
+     * Find the dance-single charts in the tags.
+     *
+     * @param tags Tags
+     * @return Charts
+     */
+    private static List<Chart> readCharts(List<String[]> tags)
+    {
+        List<Chart> charts = new ArrayList<>();
+        Chart current = null;
+
+        for (String[] tag : tags)
+        {
+            switch (tag[0])
+            {
+                // .sm: #NOTES:type:description:difficulty:meter:radar:data;
+                case "NOTES":
+                    if (current == null)
+                    {
+                        String[] fields = tag[1].split(":", 6);
+                        if (fields.length < 6) break;
+                        Chart chart = new Chart();
+                        chart.type = fields[0].trim();
+                        chart.credit = fields[1].trim().isEmpty() ? null : fields[1].trim();
+                        chart.difficulty = fields[2].trim();
+                        chart.meter = fields[3].trim();
+                        chart.notes = fields[5];
+                        charts.add(chart);
+                    }
+                    else
+                    {
+                        current.notes = tag[1];
+                        charts.add(current);
+                        current = null;
+                    }
+                    break;
+
+                // .ssc: #NOTEDATA:; starts a chart, and the tags after it belong to the chart.
+                case "NOTEDATA": current = new Chart(); break;
+                case "STEPSTYPE": if (current != null) current.type = tag[1].trim(); break;
+                case "DIFFICULTY": if (current != null) current.difficulty = tag[1].trim(); break;
+                case "METER": if (current != null) current.meter = tag[1].trim(); break;
+                case "CREDIT": if (current != null) current.credit = tag[1].trim(); break;
+                case "BPMS": if (current != null) current.bpms = tag[1]; break;
+                case "STOPS": if (current != null) current.stops = tag[1]; break;
+                case "OFFSET": if (current != null) current.offset = tag[1]; break;
+                default: break;
+            }
+        }
+
+        // Only dance-single, and name them.
+        List<Chart> result = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Chart chart : charts)
+        {
+            if (!"dance-single".equalsIgnoreCase(chart.type)) continue;
+
+            String name = chart.difficulty + " " + chart.meter;
+            for (int n = 2; names.contains(name.toLowerCase()); n++)
+            {
+                name = chart.difficulty + " " + chart.meter + " (" + n + ")";
+            }
+            names.add(name.toLowerCase());
+            chart.name = name;
+            result.add(chart);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parse a "beat=value,beat=value" list.
+     *
+     * @param text Text (Null = empty)
+     * @return List of {beat, value}
+     */
+    private static List<double[]> parsePairs(String text)
+    {
+        List<double[]> pairs = new ArrayList<>();
+        if (text == null) return pairs;
+
+        for (String pair : text.split(","))
+        {
+            String[] split = pair.split("=");
+            if (split.length < 2) continue;
+            pairs.add(new double[]{parseNumber(split[0]), parseNumber(split[1])});
+        }
+
+        return pairs;
+    }
+
+    /**
+     * Parse a number, with whitespace around it.
+     *
+     * @param text Text
+     * @return Number
+     */
+    private static double parseNumber(String text)
+    {
+        try
+        {
+            return Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new RuntimeException("Error: Beatmap format wrong.");
+        }
+    }
+
+    /**
+     * Put a property if the value is not empty.
+     *
+     * @param properties Properties
+     * @param key Key
+     * @param value Value
+     */
+    private static void putIfPresent(Map<String, String> properties, String key, String value)
+    {
+        if (value != null && !value.trim().isEmpty()) properties.put(key, value.trim());
+    }
+
+    /**
+     * A chart in a StepMania file.
+     */
+    private static class Chart
+    {
+        private String type, difficulty, meter, credit, name;
+        private String bpms, stops, offset;
+        private String notes = "";
+    }
+}
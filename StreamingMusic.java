@@ -0,0 +1,261 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Music streamed from a PCM audio file (From the AudioCache) to the audio
+ * device. Only a small part of the song is in memory at a time: the file
+ * is read in chunks by a player thread and written to a SourceDataLine,
+ * whose buffer is the ring buffer that the audio device plays from. So
+ * the memory doesn't depend on the length of the song, and starting it
+ * doesn't wait for the whole file to load.
+ *
+ * The line is opened and filled before play() is called (Cued, when the
+ * game is about to start), so the music starts the moment it's played,
+ * which keeps it in sync with the notes. It's not opened when the music
+ * is created, so loads that are prefetched but never played don't hold
+ * the audio device.
+ *
+ * @author agent
+ * @since 2026-10-18 04:55
+ */
+@SuppressWarnings("WeakerAccess")
+public class StreamingMusic implements Music
+{
+    /** Length of the line buffer in ms */
+    private static final int BUFFER_MS = 250;
+
+    /** Buffer size for reading the file */
+    private static final int READ_BUFFER = 64 * 1024;
+
+    /** Audio file */
+    private final File file;
+
+    /** The stream being played (Null if it's not cued) */
+    private AudioInputStream stream;
+
+    /** The line being played to (Null if it's not cued) */
+    private SourceDataLine line;
+
+    /** Player thread (Null if it's not playing). A player stops when it's not this anymore. */
+    private volatile Thread player;
+
+    /**
+     * Open a file and check that the audio device can play it. The line
+     * isn't opened until it's cued.
+     *
+     * @param file PCM audio file (On the disk or in an archive)
+     * @throws IOException File read error
+     * @throws UnsupportedAudioFileException The file isn't an audio file
+     * @throws LineUnavailableException The audio device can't play the format
+     */
+    public StreamingMusic(File file) throws IOException, UnsupportedAudioFileException, LineUnavailableException
+    {
+        this.file = file;
+
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(new BufferedInputStream(BeatmapFiles.open(file), READ_BUFFER)))
+        {
+            AudioFormat format = in.getFormat();
+            if (!AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, format)))
+                throw new LineUnavailableException("Error: No audio line can play " + format);
+        }
+    }
+
+    @Override
+    public synchronized void cue()
+    {
+        if (line != null || player != null) return;
+
+        try
+        {
+            open();
+        }
+        catch (IOException | UnsupportedAudioFileException | LineUnavailableException e)
+        {
+            // Opened again when it's played.
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Open the file and the line, and fill the line with the start of the
+     * song without starting it.
+     *
+     * @throws IOException File read error
+     * @throws UnsupportedAudioFileException The file isn't an audio file
+     * @throws LineUnavailableException The audio device can't play the format
+     */
+    private void open() throws IOException, UnsupportedAudioFileException, LineUnavailableException
+    {
+        stream = AudioSystem.getAudioInputStream(new BufferedInputStream(BeatmapFiles.open(file), READ_BUFFER));
+        try
+        {
+            AudioFormat format = stream.getFormat();
+            int frames = Math.max(1, (int) (format.getFrameRate() * BUFFER_MS / 1000));
+
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, frames * format.getFrameSize());
+
+            // A stopped line doesn't block while there's space.
+            byte[] buffer = new byte[line.available()];
+            int read = stream.read(buffer);
+            if (read > 0) line.write(buffer, 0, read);
+        }
+        catch (IOException | LineUnavailableException | RuntimeException e)
+        {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void play()
+    {
+        if (player != null) return;
+
+        if (line == null)
+        {
+            try
+            {
+                open();
+            }
+            catch (IOException | UnsupportedAudioFileException | LineUnavailableException e)
+            {
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        AudioInputStream playing = stream;
+        SourceDataLine playingLine = line;
+        player = new Thread(() -> stream(playing, playingLine), "Music player");
+        player.setDaemon(true);
+        player.setPriority(Thread.MAX_PRIORITY);
+
+        playingLine.start();
+        player.start();
+    }
+
+    /**
+     * Write the stream to the line until it ends or it's stopped. (Runs
+     * on the player thread) The player closes its line and stream when
+     * it's done, so stop() doesn't have to wait for it.
+     *
+     * @param playing Stream
+     * @param playingLine Line
+     */
+    private void stream(AudioInputStream playing, SourceDataLine playingLine)
+    {
+        // A quarter of the line buffer at a time, so it never runs dry.
+        int frameSize = playing.getFormat().getFrameSize();
+        byte[] chunk = new byte[Math.max(frameSize, playingLine.getBufferSize() / 4 / frameSize * frameSize)];
+
+        Thread self = Thread.currentThread();
+        try
+        {
+            int read;
+            while (player == self && (read = playing.read(chunk)) > 0)
+            {
+                playingLine.write(chunk, 0, read);
+            }
+            if (player == self) playingLine.drain();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            playingLine.close();
+            try
+            {
+                playing.close();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+
+            synchronized (this)
+            {
+                // Played to the end: cue it again the next time it's played.
+                if (line == playingLine)
+                {
+                    line = null;
+                    stream = null;
+                }
+                if (player == self) player = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void stop()
+    {
+        halt();
+
+        // Cue it again, so a retry starts right away.
+        cue();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        halt();
+    }
+
+    @Override
+    public boolean isPlaying()
+    {
+        return player != null;
+    }
+
+    /**
+     * Stop the player thread, and release the line and the stream (Or
+     * leave them to the player to close).
+     */
+    private synchronized void halt()
+    {
+        if (player == null)
+        {
+            release();
+            return;
+        }
+        player = null;
+
+        // Stopping and flushing the line wakes up the player if it's waiting to write.
+        line.stop();
+        line.flush();
+        line = null;
+        stream = null;
+    }
+
+    /**
+     * Close the line and the stream.
+     */
+    private synchronized void release()
+    {
+        if (line != null) line.close();
+        line = null;
+
+        if (stream != null)
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+        stream = null;
+    }
+}
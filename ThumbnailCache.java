@@ -0,0 +1,198 @@
+import greenfoot.GreenfootImage;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class keeps downscaled song cover thumbnails in the cache
+ * directory, so the song select doesn't decode a full size background
+ * (Often 1920x1080 or more) for every cover it shows.
+ *
+ * A thumbnail is the background scaled to the cover height and cropped to
+ * a square from the left, the same as the cover draws it. It is stored as
+ * raw ARGB pixels, named by the ContentHash of the background and the
+ * size, so loading one is mapping a small file, and identical backgrounds
+ * in different sets share a thumbnail. Missing thumbnails are generated
+ * on a background pool; load() returns null until it's done.
+ *
+ * Thumbnail file format (big endian): int magic, int width, int height, int[] ARGB pixels
+ *
+ * @author agent
+ * @since 2026-10-18 04:44
+ */
+@SuppressWarnings("WeakerAccess")
+public class ThumbnailCache
+{
+    /** Magic number at the start of every thumbnail file ("BBTH") */
+    private static final int MAGIC = 0x42425448;
+
+    /** Directory of the thumbnails */
+    private static final File DIRECTORY = new File(Constants.CACHE_DIRECTORY, "thumbnails");
+
+    /** Thumbnail threads (Leave a core for the game) */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), runnable ->
+    {
+        Thread thread = new Thread(runnable, "Thumbnail generator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /** Thumbnails being generated, by file name */
+    private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+
+    /** Thumbnails that can't be generated, by file name (Not tried again until restart) */
+    private static final Set<String> FAILED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Load the thumbnail of an image. If it's not in the cache, it is
+     * generated in the background, and this returns null.
+     *
+     * @param image Image file (On the disk or in an archive)
+     * @param hash ContentHash of the image file
+     * @param size Side length of the thumbnail
+     * @return Thumbnail (Null if it's not generated yet or it can't be)
+     */
+    public static GreenfootImage load(File image, long hash, int size)
+    {
+        String name = getName(hash, size);
+        File file = new File(DIRECTORY, name);
+
+        if (file.isFile())
+        {
+            try
+            {
+                return read(file, size);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Broken thumbnail, generate it again.
+                e.printStackTrace();
+            }
+        }
+
+        if (!FAILED.contains(name) && PENDING.add(name))
+        {
+            POOL.submit(() -> generate(image, size, name, file));
+        }
+        return null;
+    }
+
+    /**
+     * Check if a thumbnail can't be generated. When load() returned null
+     * and this is false, the thumbnail is (Or was, if it's just done)
+     * being generated. This is never false for a thumbnail that's still
+     * going to fail, since it's marked failed before it's not pending.
+     *
+     * @param hash ContentHash of the image file
+     * @param size Side length of the thumbnail
+     * @return Failed or not
+     */
+    public static boolean isFailed(long hash, int size)
+    {
+        return FAILED.contains(getName(hash, size));
+    }
+
+    /**
+     * Check if a thumbnail is being generated.
+     *
+     * @param hash ContentHash of the image file
+     * @param size Side length of the thumbnail
+     * @return Being generated or not
+     */
+    public static boolean isPending(long hash, int size)
+    {
+        return PENDING.contains(getName(hash, size));
+    }
+
+    /**
+     * Get the file name of a thumbnail.
+     *
+     * @param hash ContentHash of the image file
+     * @param size Side length of the thumbnail
+     * @return File name
+     */
+    private static String getName(long hash, int size)
+    {
+        return ContentHash.toHex(hash) + "-" + size + ".argb";
+    }
+
+    /**
+     * Read a thumbnail file.
+     *
+     * @param file Thumbnail file
+     * @param size Expected side length
+     * @return Thumbnail
+     * @throws IOException File read error
+     */
+    private static GreenfootImage read(File file, int size) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != size || buf.getInt() != size)
+                throw new IOException("Error: Broken thumbnail " + file.getName());
+
+            int[] pixels = new int[size * size];
+            buf.asIntBuffer().get(pixels);
+
+            GreenfootImage image = new GreenfootImage(size, size);
+            image.getAwtImage().setRGB(0, 0, size, size, pixels, 0, size);
+            return image;
+        }
+    }
+
+    /**
+     * Generate a thumbnail and write it. (Runs on the pool)
+     *
+     * @param image Image file
+     * @param size Side length
+     * @param name Thumbnail file name
+     * @param file Thumbnail file
+     */
+    private static void generate(File image, int size, String name, File file)
+    {
+        try
+        {
+            BufferedImage decoded = BeatmapReader.decodeImage(image, size, size);
+            if (decoded == null) throw new IOException("Error: " + image + " is not an image.");
+
+            int[] pixels = BeatmapReader.scaleImage(decoded, size, size).getRGB(0, 0, size, size, null, 0, size);
+
+            // Write to a temporary file first, so that a half written thumbnail will never be read.
+            ByteBuffer buf = ByteBuffer.allocate(4 * 3 + pixels.length * 4);
+            buf.putInt(MAGIC).putInt(size).putInt(size);
+            buf.asIntBuffer().put(pixels);
+            buf.rewind();
+
+            if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs()) throw new IOException("Error: Failed to create " + DIRECTORY);
+            File temp = File.createTempFile("thumbnail", ".tmp", DIRECTORY);
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE))
+            {
+                while (buf.hasRemaining()) channel.write(buf);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            e.printStackTrace();
+            FAILED.add(name);
+        }
+        finally
+        {
+            PENDING.remove(name);
+        }
+    }
+}